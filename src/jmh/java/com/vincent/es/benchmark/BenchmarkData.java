@@ -0,0 +1,151 @@
+package com.vincent.es.benchmark;
+
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpSerializable;
+import co.elastic.clients.json.NdJsonpSerializable;
+import com.vincent.es.entity.Course;
+import com.vincent.es.entity.Job;
+import com.vincent.es.entity.Student;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 產生 benchmark 使用的學生資料與 ES 回應內容，並提供與 transport 相同方式的請求序列化。
+ */
+public class BenchmarkData {
+    private static final List<String> DEPARTMENTS = List.of("資訊管理", "財務金融", "企業管理", "會計");
+    private static final List<String> COURSES = List.of("程式設計", "會計學", "統計學", "經濟學", "管理學");
+
+    private BenchmarkData() {}
+
+    public static List<Student> students(int count) {
+        var students = new ArrayList<Student>(count);
+        for (var i = 0; i < count; i++) {
+            students.add(student(i));
+        }
+        return students;
+    }
+
+    public static Student student(int i) {
+        var course1 = new Course();
+        course1.setName(COURSES.get(i % COURSES.size()));
+        course1.setPoint(i % 4 + 1);
+        var course2 = new Course();
+        course2.setName(COURSES.get((i + 1) % COURSES.size()));
+        course2.setPoint((i + 1) % 4 + 1);
+
+        var job = new Job();
+        job.setName("班代");
+        job.setPrimary(i % 2 == 0);
+
+        var student = new Student();
+        student.setId(String.valueOf(100000 + i));
+        student.setName("Student " + i);
+        student.setDepartments(List.of(DEPARTMENTS.get(i % DEPARTMENTS.size())));
+        student.setCourses(List.of(course1, course2));
+        student.setGrade(i % 4 + 1);
+        student.setConductScore(60 + i % 40);
+        student.setJob(job);
+        student.setIntroduction("I learn programming and accounting in university, and record them in my blog.");
+        student.setEnglishIssuedDate(new Date(1_600_000_000_000L + i * 86_400_000L));
+        student.setBloodType("O");
+        student.setPhoneNumbers(List.of("0912345678"));
+
+        return student;
+    }
+
+    // 與 ES 的 search 回應相同結構，hits 的 _source 為傳入的文件
+    public static byte[] searchResponseJson(JsonpMapper mapper, List<Student> docs) {
+        var out = new ByteArrayOutputStream();
+        var generator = mapper.jsonProvider().createGenerator(out);
+
+        generator.writeStartObject();
+        generator.write("took", 3);
+        generator.write("timed_out", false);
+        generator.writeStartObject("_shards")
+                .write("total", 1)
+                .write("successful", 1)
+                .write("skipped", 0)
+                .write("failed", 0)
+                .writeEnd();
+        generator.writeStartObject("hits");
+        generator.writeStartObject("total")
+                .write("value", docs.size())
+                .write("relation", "eq")
+                .writeEnd();
+        generator.write("max_score", 1.0);
+        generator.writeStartArray("hits");
+        for (var doc : docs) {
+            generator.writeStartObject();
+            generator.write("_index", "student");
+            generator.write("_id", doc.getId());
+            generator.write("_score", 1.0);
+            generator.writeKey("_source");
+            mapper.serialize(doc, generator);
+            generator.writeEnd();
+        }
+        generator.writeEnd();
+        generator.writeEnd();
+        generator.writeEnd();
+        generator.close();
+
+        return out.toByteArray();
+    }
+
+    public static void writeJson(JsonpMapper mapper, JsonpSerializable value, OutputStream out) {
+        var generator = mapper.jsonProvider().createGenerator(out);
+        value.serialize(generator, mapper);
+        generator.close();
+    }
+
+    // 與 transport 寫出 bulk/msearch body 的方式相同：每個項目一行
+    public static void writeNdJson(JsonpMapper mapper, NdJsonpSerializable value, OutputStream out) {
+        var items = value._serializables();
+        while (items.hasNext()) {
+            var item = items.next();
+            if (item instanceof NdJsonpSerializable && item != value) {
+                writeNdJson(mapper, (NdJsonpSerializable) item, out);
+                continue;
+            }
+
+            var generator = mapper.jsonProvider().createGenerator(out);
+            mapper.serialize(item, generator);
+            generator.close();
+            write(out, '\n');
+        }
+    }
+
+    private static void write(OutputStream out, int b) {
+        try {
+            out.write(b);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * 只計算寫入位元組數，避免把緩衝區配置算進序列化的成本。
+     */
+    public static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.vincent.es.benchmark;
+
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.FieldValueFactorModifier;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.vincent.es.util.SearchInfo;
+import com.vincent.es.util.SearchUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 建立查詢條件與將 search 請求序列化成 JSON 的成本。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBuildingBenchmark {
+    private static final List<String> DEPARTMENTS = List.of("資訊管理", "財務金融", "企業管理", "會計");
+    private static final Set<String> MATCH_FIELDS = Set.of("name", "introduction");
+
+    private JsonpMapper mapper;
+    private SearchInfo searchInfo;
+
+    @Setup
+    public void setup() {
+        mapper = new JacksonJsonpMapper();
+        searchInfo = createSearchInfo();
+    }
+
+    @Benchmark
+    public Query termsQuery() {
+        return SearchUtils.createTermsQuery("departments.keyword", DEPARTMENTS);
+    }
+
+    @Benchmark
+    public Query matchQuery() {
+        return SearchUtils.createMatchQuery(MATCH_FIELDS, "vincent career");
+    }
+
+    @Benchmark
+    public Query searchInfoToQuery() {
+        return searchInfo.toQuery();
+    }
+
+    @Benchmark
+    public SearchInfo buildSearchInfo() {
+        return createSearchInfo();
+    }
+
+    @Benchmark
+    public long serializeSearchRequest() {
+        var request = new SearchRequest.Builder()
+                .index("student")
+                .query(searchInfo.toQuery())
+                .sort(searchInfo.getSortOptions())
+                .from(searchInfo.getFrom())
+                .size(searchInfo.getSize())
+                .build();
+
+        var out = new BenchmarkData.CountingOutputStream();
+        BenchmarkData.writeJson(mapper, request, out);
+        return out.getCount();
+    }
+
+    @Benchmark
+    public String canonicalJson() {
+        return searchInfo.toCanonicalJson(mapper);
+    }
+
+    private static SearchInfo createSearchInfo() {
+        var departmentQuery = SearchUtils.createTermsQuery("departments.keyword", DEPARTMENTS);
+        var gradeQuery = SearchUtils.createRangeQuery("grade", 2, 4);
+        var textQuery = SearchUtils.createMatchQuery(MATCH_FIELDS, "vincent career");
+        var bool = BoolQuery.of(b -> b
+                .filter(departmentQuery, gradeQuery)
+                .must(textQuery));
+
+        var info = SearchInfo.of(bool);
+        info.setFunctionScores(List.of(SearchUtils
+                .createFieldValueFactor("conductScore", 1.0, FieldValueFactorModifier.Log1p, 0.0)));
+        info.setSortOptions(List.of(
+                SearchUtils.createSortOption("grade", SortOrder.Desc),
+                SearchUtils.createSortOption("id", SortOrder.Asc)));
+        info.setFrom(0);
+        info.setSize(20);
+
+        return info;
+    }
+}
@@ -0,0 +1,73 @@
+package com.vincent.es.benchmark;
+
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.vincent.es.entity.Student;
+import com.vincent.es.util.JsonMappers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以 JacksonJsonpMapper 序列化 Student 與解析大型 SearchResponse&lt;Student&gt; 的成本。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchResponseBenchmark {
+    @Param({"100", "1000", "10000"})
+    private int hits;
+
+    // default：未調整的 ObjectMapper；tuned：與 ES transport 相同的共用設定
+    @Param({"default", "tuned"})
+    private String mapperConfig;
+
+    private JsonpMapper mapper;
+    private JsonpDeserializer<SearchResponse<Student>> deserializer;
+    private List<Student> students;
+    private byte[] responseJson;
+
+    @Setup
+    public void setup() {
+        mapper = "tuned".equals(mapperConfig)
+                ? new JacksonJsonpMapper(JsonMappers.forElasticsearch(JsonMappers.getDefault()))
+                : new JacksonJsonpMapper();
+        deserializer = SearchResponse.createSearchResponseDeserializer(JsonpDeserializer.of(Student.class));
+        students = BenchmarkData.students(hits);
+        responseJson = BenchmarkData.searchResponseJson(mapper, students);
+    }
+
+    @Benchmark
+    public SearchResponse<Student> deserializeSearchResponse() {
+        var parser = mapper.jsonProvider().createParser(new ByteArrayInputStream(responseJson));
+        return deserializer.deserialize(parser, mapper);
+    }
+
+    @Benchmark
+    public long serializeStudents() {
+        var out = new BenchmarkData.CountingOutputStream();
+        for (var student : students) {
+            var generator = mapper.jsonProvider().createGenerator(out);
+            mapper.serialize(student, generator);
+            generator.close();
+        }
+        return out.getCount();
+    }
+}
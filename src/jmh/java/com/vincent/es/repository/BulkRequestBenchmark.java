@@ -0,0 +1,78 @@
+package com.vincent.es.repository;
+
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.vincent.es.benchmark.BenchmarkData;
+import com.vincent.es.entity.Student;
+import com.vincent.es.metrics.StudentEsMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以 StudentBulkIngester 建立 bulk 請求，並序列化成 NDJSON 的成本。
+ * 放在 repository 套件中，直接呼叫 ingester 實際使用的 toBulkRequest。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkRequestBenchmark {
+    @Param({"1000", "10000", "100000"})
+    private int documents;
+
+    private JsonpMapper mapper;
+    private StudentBulkIngester ingester;
+    private List<Student> students;
+    private BulkRequest request;
+
+    @Setup
+    public void setup() {
+        mapper = new JacksonJsonpMapper();
+        // 只建立請求，不會送出，因此不需要 client
+        ingester = new StudentBulkIngester(null, "student", new BulkIngestOptions(), null,
+                Executors.defaultThreadFactory(), new StudentEsMetrics(), null);
+        students = BenchmarkData.students(documents);
+        request = ingester.toBulkRequest(students);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ingester.close();
+    }
+
+    @Benchmark
+    public BulkRequest buildBulkRequest() {
+        return ingester.toBulkRequest(students);
+    }
+
+    @Benchmark
+    public long serializeBulkRequest() {
+        var out = new BenchmarkData.CountingOutputStream();
+        BenchmarkData.writeNdJson(mapper, request, out);
+        return out.getCount();
+    }
+
+    @Benchmark
+    public long buildAndSerializeBulkRequest() {
+        var out = new BenchmarkData.CountingOutputStream();
+        BenchmarkData.writeNdJson(mapper, ingester.toBulkRequest(students), out);
+        return out.getCount();
+    }
+}
@@ -1,30 +1,260 @@
 package com.vincent.es.config;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
 import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.ElasticsearchTransport;
 import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vincent.es.entity.Student;
+import com.vincent.es.metrics.StudentEsMetrics;
+import com.vincent.es.metrics.TransportMetricsInterceptor;
+import com.vincent.es.metrics.TransportPoolMetrics;
+import com.vincent.es.repository.StudentEsAsyncRepository;
 import com.vincent.es.repository.StudentEsRepository;
+import com.vincent.es.repository.StudentIndexSettings;
+import com.vincent.es.repository.VersionedDocument;
+import com.vincent.es.util.BoundedCache;
+import com.vincent.es.util.JsonMappers;
+import com.vincent.es.util.SearchTemplates;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
 import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.Sniffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
 @Configuration
+@EnableConfigurationProperties(ElasticSearchProperties.class)
 public class ElasticSearchConfig {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ElasticSearchConfig.class);
+    private static final String STUDENT_INDEX_NAME = "student";
+
+    @Value("${app.cache.find-by-id.max-size:10000}")
+    private int findByIdCacheMaxSize;
+
+    @Value("${app.cache.find-by-id.ttl:30s}")
+    private Duration findByIdCacheTtl;
+
+    @Value("${app.coalesce.find-by-id.enabled:false}")
+    private boolean findByIdCoalescingEnabled;
+
+    @Value("${app.coalesce.find-by-id.window:2ms}")
+    private Duration findByIdCoalescingWindow;
+
+    @Value("${app.coalesce.find-by-id.max-batch-size:100}")
+    private int findByIdCoalescingMaxBatchSize;
+
+    @Value("${app.coalesce.find.enabled:false}")
+    private boolean findCoalescingEnabled;
+
+    @Value("${app.coalesce.find.window:2ms}")
+    private Duration findCoalescingWindow;
+
+    @Value("${app.coalesce.find.max-batch-size:20}")
+    private int findCoalescingMaxBatchSize;
+
+    @Value("${app.cache.find.max-size:1000}")
+    private int findCacheMaxSize;
+
+    @Value("${app.cache.find.ttl:5s}")
+    private Duration findCacheTtl;
+
+    // 自行建立連線池，以便設定 IO 執行緒數量並觀察連線使用狀況
+    @Bean
+    public PoolingNHttpClientConnectionManager elasticsearchConnectionManager(ElasticSearchProperties properties)
+            throws IOReactorException {
+        var ioReactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(properties.getIoThreadCount())
+                .setConnectTimeout((int) properties.getConnectTimeout().toMillis())
+                .setSoTimeout((int) properties.getSocketTimeout().toMillis())
+                .setSoKeepAlive(true)
+                .build();
+
+        var connectionManager = new PoolingNHttpClientConnectionManager(new DefaultConnectingIOReactor(ioReactorConfig));
+        connectionManager.setMaxTotal(properties.getMaxConnTotal());
+        connectionManager.setDefaultMaxPerRoute(properties.getMaxConnPerRoute());
+
+        return connectionManager;
+    }
+
+    // 由 Actuator 以 /actuator/prometheus 輸出
+    @Bean
+    public StudentEsMetrics studentEsMetrics(MeterRegistry registry) {
+        return new StudentEsMetrics(registry);
+    }
+
+    @Bean
+    public TransportPoolMetrics transportPoolMetrics(PoolingNHttpClientConnectionManager connectionManager) {
+        return new TransportPoolMetrics(connectionManager);
+    }
+
+    @Bean(destroyMethod = "close")
+    public RestClient elasticsearchRestClient(
+            ElasticSearchProperties properties, PoolingNHttpClientConnectionManager connectionManager,
+            StudentEsMetrics metrics, Optional<SniffOnFailureListener> sniffOnFailureListener) {
+
+        var httpHosts = properties.getHosts().stream()
+                .map(HttpHost::create)
+                .toArray(HttpHost[]::new);
+        var keepAliveMillis = properties.getKeepAlive().toMillis();
+        var metricsInterceptor = new TransportMetricsInterceptor(metrics);
+
+        var builder = RestClient.builder(httpHosts)
+                .setCompressionEnabled(properties.isCompressionEnabled())
+                .setRequestConfigCallback(b -> b
+                        .setConnectTimeout((int) properties.getConnectTimeout().toMillis())
+                        .setSocketTimeout((int) properties.getSocketTimeout().toMillis()))
+                .setHttpClientConfigCallback(b -> b
+                        .setConnectionManager(connectionManager)
+                        .addInterceptorLast((HttpRequestInterceptor) metricsInterceptor)
+                        .addInterceptorLast((HttpResponseInterceptor) metricsInterceptor)
+                        .setKeepAliveStrategy((response, context) -> {
+                            // ES 不會回傳 Keep-Alive 標頭，預設會無限期保留連線，此處加上上限
+                            var duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+                                    .getKeepAliveDuration(response, context);
+                            return duration > 0 ? Math.min(duration, keepAliveMillis) : keepAliveMillis;
+                        }));
+        sniffOnFailureListener.ifPresent(builder::setFailureListener);
+
+        return builder.build();
+    }
 
+    // 節點請求失敗時立即重新探查，不必等到下一次定期探查
     @Bean
-    public ElasticsearchClient elasticsearchClient() {
-        var httpHost = new HttpHost("localhost", 9200);
-        var restClient = RestClient.builder(httpHost).build();
-        var transport = new RestClientTransport(restClient, new JacksonJsonpMapper());
+    @ConditionalOnProperty(name = "app.elasticsearch.sniff-interval")
+    public SniffOnFailureListener sniffOnFailureListener() {
+        return new SniffOnFailureListener();
+    }
+
+    // 定期呼叫 _nodes/http 更新 RestClient 的節點清單
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "app.elasticsearch.sniff-interval")
+    public Sniffer elasticsearchSniffer(
+            ElasticSearchProperties properties, RestClient restClient, SniffOnFailureListener sniffOnFailureListener) {
+        var nodesSniffer = new ElasticsearchNodesSniffer(
+                restClient, ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT, sniffScheme(properties.getHosts()));
+        var sniffer = Sniffer.builder(restClient)
+                .setSniffIntervalMillis((int) properties.getSniffInterval().toMillis())
+                .setNodesSniffer(nodesSniffer)
+                .build();
+        sniffOnFailureListener.setSniffer(sniffer);
+
+        return sniffer;
+    }
+
+    // 與 controller 共用同一份 Jackson 設定
+    @Bean
+    public ElasticsearchTransport elasticsearchTransport(RestClient restClient, ObjectMapper objectMapper) {
+        var jsonpMapper = new JacksonJsonpMapper(JsonMappers.forElasticsearch(objectMapper));
+        return new RestClientTransport(restClient, jsonpMapper);
+    }
 
+    @Bean
+    public ElasticsearchClient elasticsearchClient(ElasticsearchTransport transport) {
         return new ElasticsearchClient(transport);
     }
 
+    // 與同步 client 共用 transport 及其連線池
+    @Bean
+    public ElasticsearchAsyncClient elasticsearchAsyncClient(ElasticsearchTransport transport) {
+        return new ElasticsearchAsyncClient(transport);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.cache.find-by-id.enabled", havingValue = "true", matchIfMissing = true)
+    public BoundedCache<String, Optional<VersionedDocument<Student>>> findByIdCache(StudentEsMetrics metrics) {
+        var cache = new BoundedCache<String, Optional<VersionedDocument<Student>>>(
+                findByIdCacheMaxSize, findByIdCacheTtl);
+        metrics.registerCache("find_by_id", cache);
+        return cache;
+    }
+
     @Bean
-    public StudentEsRepository studentEsRepository(ElasticsearchClient client) {
-        var repo = new StudentEsRepository(client, "student");
-        repo.init();
+    @ConditionalOnProperty(name = "app.cache.find.enabled", havingValue = "true")
+    public BoundedCache<String, List<Student>> findCache(StudentEsMetrics metrics) {
+        var cache = new BoundedCache<String, List<Student>>(findCacheMaxSize, findCacheTtl);
+        metrics.registerCache("find", cache);
+        return cache;
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "app.elasticsearch.index")
+    public StudentIndexSettings studentIndexSettings() {
+        return new StudentIndexSettings();
+    }
+
+    @Bean
+    public StudentEsRepository studentEsRepository(
+            ElasticsearchClient client, RestClient restClient, StudentEsMetrics metrics,
+            StudentIndexSettings indexSettings,
+            Optional<BoundedCache<String, Optional<VersionedDocument<Student>>>> findByIdCache,
+            Optional<BoundedCache<String, List<Student>>> findCache) {
+        var repo = new StudentEsRepository(client, STUDENT_INDEX_NAME);
+        repo.setRestClient(restClient);
+        repo.setIndexSettings(indexSettings);
+        repo.setMetrics(metrics);
+        findByIdCache.ifPresent(repo::setFindByIdCache);
+        findCache.ifPresent(repo::setFindCache);
+        if (findByIdCoalescingEnabled) {
+            repo.enableFindByIdCoalescing(findByIdCoalescingWindow, findByIdCoalescingMaxBatchSize);
+        }
+        if (findCoalescingEnabled) {
+            repo.enableFindCoalescing(findCoalescingWindow, findCoalescingMaxBatchSize);
+        }
+        repo.registerSearchTemplate(SearchTemplates.DEPARTMENT_GRADE_TEXT, SearchTemplates.departmentGradeText());
+        // 只確認別名存在，需要 reindex 時於背景進行，不阻擋啟動
+        repo.init().whenComplete((v, e) -> {
+            if (e != null) {
+                LOGGER.error("Failed to migrate index {}.", STUDENT_INDEX_NAME, e);
+            }
+        });
         return repo;
     }
-}
\ No newline at end of file
+
+    @Bean
+    public StudentEsAsyncRepository studentEsAsyncRepository(
+            ElasticsearchAsyncClient client, StudentEsMetrics metrics,
+            Optional<BoundedCache<String, Optional<VersionedDocument<Student>>>> findByIdCache,
+            Optional<BoundedCache<String, List<Student>>> findCache) {
+        var repo = new StudentEsAsyncRepository(client, STUDENT_INDEX_NAME);
+        repo.setMetrics(metrics);
+        findByIdCache.ifPresent(repo::setFindByIdCache);
+        findCache.ifPresent(repo::setFindCache);
+        return repo;
+    }
+
+    // 探查到的節點只有位址，scheme 沿用設定的節點，因此所有節點需使用相同的 scheme
+    private static ElasticsearchNodesSniffer.Scheme sniffScheme(List<String> hosts) {
+        var schemes = hosts.stream()
+                .map(host -> HttpHost.create(host).getSchemeName())
+                .collect(Collectors.toSet());
+        if (schemes.size() != 1) {
+            throw new IllegalStateException("Sniffing requires all hosts to use the same scheme, but got " + schemes + ".");
+        }
+
+        return "https".equals(schemes.iterator().next())
+                ? ElasticsearchNodesSniffer.Scheme.HTTPS
+                : ElasticsearchNodesSniffer.Scheme.HTTP;
+    }
+}
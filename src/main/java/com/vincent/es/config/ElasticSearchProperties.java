@@ -0,0 +1,91 @@
+package com.vincent.es.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "app.elasticsearch")
+public class ElasticSearchProperties {
+    private List<String> hosts = List.of("http://localhost:9200"); // 節點位址，請求會輪流送往各節點
+    private int maxConnTotal = 100;                                // 連線池的總連線數上限
+    private int maxConnPerRoute = 50;                              // 每個節點的連線數上限
+    private int ioThreadCount = Runtime.getRuntime().availableProcessors(); // IO reactor 執行緒數量
+    private boolean compressionEnabled = false;                    // 是否以 gzip 壓縮請求內容
+    private Duration connectTimeout = Duration.ofSeconds(1);       // 建立連線的逾時時間
+    private Duration socketTimeout = Duration.ofSeconds(30);       // 等待回應的逾時時間
+    private Duration keepAlive = Duration.ofMinutes(1);            // 閒置連線的最長保留時間
+    private Duration sniffInterval;                                // 重新探查叢集節點的間隔，null 表示不探查
+
+    public List<String> getHosts() {
+        return hosts;
+    }
+
+    public void setHosts(List<String> hosts) {
+        this.hosts = hosts;
+    }
+
+    public int getMaxConnTotal() {
+        return maxConnTotal;
+    }
+
+    public void setMaxConnTotal(int maxConnTotal) {
+        this.maxConnTotal = maxConnTotal;
+    }
+
+    public int getMaxConnPerRoute() {
+        return maxConnPerRoute;
+    }
+
+    public void setMaxConnPerRoute(int maxConnPerRoute) {
+        this.maxConnPerRoute = maxConnPerRoute;
+    }
+
+    public int getIoThreadCount() {
+        return ioThreadCount;
+    }
+
+    public void setIoThreadCount(int ioThreadCount) {
+        this.ioThreadCount = ioThreadCount;
+    }
+
+    public boolean isCompressionEnabled() {
+        return compressionEnabled;
+    }
+
+    public void setCompressionEnabled(boolean compressionEnabled) {
+        this.compressionEnabled = compressionEnabled;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getSocketTimeout() {
+        return socketTimeout;
+    }
+
+    public void setSocketTimeout(Duration socketTimeout) {
+        this.socketTimeout = socketTimeout;
+    }
+
+    public Duration getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(Duration keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public Duration getSniffInterval() {
+        return sniffInterval;
+    }
+
+    public void setSniffInterval(Duration sniffInterval) {
+        this.sniffInterval = sniffInterval;
+    }
+}
@@ -0,0 +1,25 @@
+package com.vincent.es.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class JacksonConfig {
+
+    // Spring Boot 會把 Module bean 與其預設模組一併註冊到 ObjectMapper
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    // 套用至 Spring Boot 建立的 ObjectMapper，controller 與 ES transport 都以它為基礎
+    // 與 JsonMappers.builder() 相同的設定；Spring Boot 已預設不因未知欄位而失敗
+    @Bean
+    public Jackson2ObjectMapperBuilderCustomizer jsonMappersCustomizer() {
+        return builder -> builder.featuresToDisable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+}
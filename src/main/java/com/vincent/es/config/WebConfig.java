@@ -0,0 +1,16 @@
+package com.vincent.es.config;
+
+import co.elastic.clients.elasticsearch._types.Refresh;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.format.FormatterRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    // 讓請求參數可直接以 ES 的寫法 (true, false, wait_for) 指定 refresh
+    @Override
+    public void addFormatters(FormatterRegistry registry) {
+        registry.addConverter(String.class, Refresh.class, Refresh._DESERIALIZER::parse);
+    }
+}
@@ -1,14 +1,36 @@
 package com.vincent.es.controller;
 
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.Result;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.vincent.es.entity.Student;
+import com.vincent.es.repository.BulkIngestException;
+import com.vincent.es.repository.BulkIngestResult;
+import com.vincent.es.repository.DocumentVersion;
+import com.vincent.es.repository.StudentEsAsyncRepository;
 import com.vincent.es.repository.StudentEsRepository;
+import com.vincent.es.repository.VersionConflictException;
+import com.vincent.es.util.SearchInfo;
+import com.vincent.es.util.SearchTemplates;
+import com.vincent.es.util.SearchUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 @RestController
 @RequestMapping(value = "/students", produces = MediaType.APPLICATION_JSON_VALUE)
@@ -17,36 +39,226 @@ public class StudentController {
     @Autowired
     private StudentEsRepository studentEsRepository;
 
+    @Autowired
+    private StudentEsAsyncRepository studentEsAsyncRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // refresh=wait_for 時，回應後即可搜尋到新資料
     @PostMapping
-    public ResponseEntity<Student> create(@RequestBody Student request) {
-        var student = studentEsRepository.insert(request);
+    public ResponseEntity<Student> create(
+            @RequestBody Student request,
+            @RequestParam(value = "refresh", required = false) Refresh refresh) {
+        var student = studentEsRepository.insert(request, refresh);
         return ResponseEntity.status(HttpStatus.CREATED).body(student);
     }
 
     @PostMapping("/bulk")
-    public ResponseEntity<Void> create(@RequestBody List<Student> requests) {
-        studentEsRepository.insert(requests);
+    public ResponseEntity<Void> create(
+            @RequestBody List<Student> requests,
+            @RequestParam(value = "refresh", required = false) Refresh refresh) {
+        var failedStatuses = ConcurrentHashMap.<Integer>newKeySet();
+        var result = studentEsRepository.insert(requests, item -> {
+            if (!item.isSucceeded()) {
+                failedStatuses.add(item.getStatus());
+            }
+        }, refresh);
+        if (result.getFailed() > 0) {
+            throw new BulkIngestException(result, failedStatuses);
+        }
         return ResponseEntity.status(HttpStatus.CREATED).build();
     }
 
+    // 逐筆讀取 NDJSON 或 JSON 陣列，交給 bulk ingester 分批寫入，不將整份內容載入記憶體
+    // bulkLoad 為 true 時，載入期間暫停 refresh 與副本，適合重新載入整份資料
+    // forceMerge 為 true 時，bulkLoad 完成後再合併為單一 segment，只適合之後不再寫入的索引
+    @PostMapping(value = "/bulk/stream", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<BulkIngestResult> createByStream(
+            HttpServletRequest request,
+            @RequestParam(value = "bulkLoad", defaultValue = "false") boolean bulkLoad,
+            @RequestParam(value = "forceMerge", defaultValue = "false") boolean forceMerge) throws IOException {
+        try (MappingIterator<Student> iterator = objectMapper
+                .readerFor(Student.class)
+                .readValues(request.getInputStream())) {
+            var result = bulkLoad
+                    ? studentEsRepository.bulkLoad(() -> iterator, forceMerge, null)
+                    : studentEsRepository.insert(() -> iterator, null);
+            return ResponseEntity.status(HttpStatus.CREATED).body(result);
+        }
+    }
+
+    // 帶有 If-Match 時，只有文件仍是該版本才會寫入，否則回應 409
     @PutMapping("/{id}")
-    public ResponseEntity<Void> update(@PathVariable("id") String id, @RequestBody Student request) {
+    public ResponseEntity<Void> update(
+            @PathVariable("id") String id, @RequestBody Student request,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestParam(value = "refresh", required = false) Refresh refresh) {
         request.setId(id);
-        studentEsRepository.save(request);
-        return ResponseEntity.noContent().build();
+        var saved = studentEsRepository.save(request, toVersion(ifMatch), refresh);
+        return ResponseEntity.noContent()
+                .eTag(saved.getVersion().toETag())
+                .build();
+    }
+
+    // 只送出有變更的欄位，內容與現有文件相同時不會重新寫入
+    @PatchMapping("/{id}")
+    public ResponseEntity<Void> patch(
+            @PathVariable("id") String id, @RequestBody Map<String, Object> fields,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestParam(value = "refresh", required = false) Refresh refresh) {
+        var result = studentEsRepository.update(id, fields, toVersion(ifMatch), refresh);
+        return result == Result.NotFound
+                ? ResponseEntity.notFound().build()
+                : ResponseEntity.noContent().build();
+    }
+
+    // 以預先註冊的 search template 查詢，只需傳送參數
+    @GetMapping("/search")
+    public ResponseEntity<List<Student>> search(
+            @RequestParam("department") String department,
+            @RequestParam(value = "minGrade", defaultValue = "1") int minGrade,
+            @RequestParam(value = "maxGrade", defaultValue = "4") int maxGrade,
+            @RequestParam("text") String text) {
+        var params = Map.<String, Object>of(
+                "department", department,
+                "minGrade", minGrade,
+                "maxGrade", maxGrade,
+                "text", text);
+        var students = studentEsRepository.findByTemplate(SearchTemplates.DEPARTMENT_GRADE_TEXT, params);
+        return ResponseEntity.ok(students);
+    }
+
+    // 將年級低於 maxGrade 的學生升一個年級，回傳更新的數量
+    @PostMapping("/promote")
+    public ResponseEntity<Map<String, Long>> promote(@RequestParam(value = "maxGrade", defaultValue = "4") int maxGrade) {
+        var query = SearchUtils.createRangeQuery("grade", null, maxGrade - 1);
+        var script = SearchUtils.createInlineScript("ctx._source.grade += params.step", Map.of("step", 1));
+
+        var updated = studentEsRepository.updateByQuery(SearchInfo.of(query), script);
+        return ResponseEntity.ok(Map.of("updated", updated));
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> delete(@PathVariable("id") String id) {
-        studentEsRepository.deleteById(id);
+    public ResponseEntity<Void> delete(
+            @PathVariable("id") String id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+            @RequestParam(value = "refresh", required = false) Refresh refresh) {
+        studentEsRepository.deleteById(id, toVersion(ifMatch), refresh);
         return ResponseEntity.noContent().build();
     }
 
+    // 以多個 slice 平行匯出整個索引，結果以 NDJSON 邊讀邊寫回 response
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(value = "slices", defaultValue = "4") int slices) {
+        // 在開始串流前檢查，否則錯誤只能在回應送出後才發生
+        if (slices < 1) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "slices must be at least 1.");
+        }
+        StreamingResponseBody body = out -> studentEsRepository.exportNdjson(new SearchInfo(), slices, out);
+        return ResponseEntity.ok(body);
+    }
+
+    // 一邊解析 ES 的回應一邊以 NDJSON 寫回，不在記憶體中保留整頁結果
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream(@RequestParam(value = "size", defaultValue = "1000") int size) {
+        var info = new SearchInfo();
+        info.setSize(size);
+
+        StreamingResponseBody body = out -> {
+            try (var writer = objectMapper.writer().withRootValueSeparator("\n").writeValues(out)) {
+                studentEsRepository.findEach(info, student -> {
+                    try {
+                        writer.write(student);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok(body);
+    }
+
+    // 例如 GET /students?ids=101,102，以一次 mget 取得多筆資料
+    @GetMapping(params = "ids")
+    public ResponseEntity<List<Student>> getAll(@RequestParam("ids") List<String> ids) {
+        var students = studentEsRepository.findAllById(ids);
+        return ResponseEntity.ok(students);
+    }
+
+    // 回應的 ETag 為文件目前的版本，可在寫入時放入 If-Match
     @GetMapping("/{id}")
     public ResponseEntity<Student> get(@PathVariable("id") String id) {
-        var student = studentEsRepository.findById(id).orElse(null);
+        var student = studentEsRepository.findVersionedById(id).orElse(null);
         return student == null
                 ? ResponseEntity.notFound().build()
-                : ResponseEntity.ok(student);
+                : ResponseEntity.ok().eTag(student.getVersion().toETag()).body(student.getDocument());
+    }
+
+    // 以下端點回傳 CompletableFuture，等待 ES 回應時會釋放 servlet 執行緒
+
+    @PostMapping("/async")
+    public CompletableFuture<ResponseEntity<Student>> createAsync(@RequestBody Student request) {
+        return studentEsAsyncRepository.insert(request)
+                .thenApply(student -> ResponseEntity.status(HttpStatus.CREATED).body(student));
+    }
+
+    @PostMapping("/async/bulk")
+    public CompletableFuture<ResponseEntity<Void>> createAsync(@RequestBody List<Student> requests) {
+        return studentEsAsyncRepository.insert(requests)
+                .thenApply(students -> ResponseEntity.status(HttpStatus.CREATED).build());
+    }
+
+    @PutMapping("/async/{id}")
+    public CompletableFuture<ResponseEntity<Void>> updateAsync(@PathVariable("id") String id, @RequestBody Student request) {
+        request.setId(id);
+        return studentEsAsyncRepository.save(request)
+                .thenApply(student -> ResponseEntity.noContent().build());
+    }
+
+    @DeleteMapping("/async/{id}")
+    public CompletableFuture<ResponseEntity<Void>> deleteAsync(@PathVariable("id") String id) {
+        return studentEsAsyncRepository.deleteById(id)
+                .thenApply(v -> ResponseEntity.noContent().build());
+    }
+
+    @GetMapping("/async/{id}")
+    public CompletableFuture<ResponseEntity<Student>> getAsync(@PathVariable("id") String id) {
+        return studentEsAsyncRepository.findById(id)
+                .thenApply(student -> student
+                        .map(ResponseEntity::ok)
+                        .orElseGet(() -> ResponseEntity.notFound().build()));
+    }
+
+    @ExceptionHandler(VersionConflictException.class)
+    public ResponseEntity<Void> handleVersionConflict() {
+        return ResponseEntity.status(HttpStatus.CONFLICT).build();
+    }
+
+    // 回應中附上成功與失敗的數量，讓呼叫端判斷是否需要重送
+    // 失敗全由請求內容造成時，以該狀態（多種時為 400）回應；其餘為 ES 或連線的問題，回應 502
+    @ExceptionHandler(BulkIngestException.class)
+    public ResponseEntity<BulkIngestResult> handleBulkIngestFailure(BulkIngestException e) {
+        var status = HttpStatus.BAD_GATEWAY;
+        if (e.isClientError()) {
+            var statuses = e.getFailedStatuses();
+            status = statuses.size() == 1
+                    ? Optional.ofNullable(HttpStatus.resolve(statuses.iterator().next())).orElse(HttpStatus.BAD_REQUEST)
+                    : HttpStatus.BAD_REQUEST;
+        }
+        return ResponseEntity.status(status).body(e.getResult());
+    }
+
+    // If-Match: * 只要求文件存在，不限定版本，因此視同未指定條件
+    private DocumentVersion toVersion(String ifMatch) {
+        if (ifMatch == null || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+
+        try {
+            return DocumentVersion.fromETag(ifMatch);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
     }
 }
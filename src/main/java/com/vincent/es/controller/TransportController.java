@@ -0,0 +1,34 @@
+package com.vincent.es.controller;
+
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RestController
+@RequestMapping(value = "/transport", produces = MediaType.APPLICATION_JSON_VALUE)
+public class TransportController {
+
+    @Autowired
+    private PoolingNHttpClientConnectionManager connectionManager;
+
+    // 連線池目前的使用狀況，包含總量與各節點的 leased、pending、available、max
+    @GetMapping("/pool")
+    public ResponseEntity<Map<String, Object>> getPoolStats() {
+        var routes = new LinkedHashMap<String, Object>();
+        connectionManager.getRoutes().forEach(route ->
+                routes.put(route.getTargetHost().toURI(), connectionManager.getStats(route)));
+
+        var body = new LinkedHashMap<String, Object>();
+        body.put("total", connectionManager.getTotalStats());
+        body.put("routes", routes);
+
+        return ResponseEntity.ok(body);
+    }
+}
@@ -4,6 +4,13 @@ public class Course {
     private String name; // 課程名稱
     private int point;   // 學分數
 
+    public Course copy() {
+        var copy = new Course();
+        copy.name = name;
+        copy.point = point;
+        return copy;
+    }
+
     public String getName() {
         return name;
     }
@@ -4,6 +4,13 @@ public class Job {
     private String name;     // 職務名稱
     private Boolean primary; // 是否主要 (正, 副)
 
+    public Job copy() {
+        var copy = new Job();
+        copy.name = name;
+        copy.primary = primary;
+        return copy;
+    }
+
     public String getName() {
         return name;
     }
@@ -1,7 +1,9 @@
 package com.vincent.es.entity;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Collectors;
 
 public class Student {
     private String id;                 // 學生編號，可當作 document id
@@ -16,6 +18,23 @@ public class Student {
     private String bloodType;          // 血型
     private List<String> phoneNumbers; // 電話號碼
 
+    // 深層複製，修改複本不會影響原本的物件
+    public Student copy() {
+        var copy = new Student();
+        copy.id = id;
+        copy.name = name;
+        copy.departments = departments == null ? null : new ArrayList<>(departments);
+        copy.courses = courses == null ? null : courses.stream().map(Course::copy).collect(Collectors.toList());
+        copy.grade = grade;
+        copy.conductScore = conductScore;
+        copy.job = job == null ? null : job.copy();
+        copy.introduction = introduction;
+        copy.englishIssuedDate = englishIssuedDate == null ? null : new Date(englishIssuedDate.getTime());
+        copy.bloodType = bloodType;
+        copy.phoneNumbers = phoneNumbers == null ? null : new ArrayList<>(phoneNumbers);
+        return copy;
+    }
+
     public String getId() {
         return id;
     }
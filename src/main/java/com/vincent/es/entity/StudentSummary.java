@@ -0,0 +1,34 @@
+package com.vincent.es.entity;
+
+/**
+ * 列表畫面使用的學生摘要，查詢時只取回這些欄位的 _source。
+ */
+public class StudentSummary {
+    private String id;    // 學生編號
+    private String name;  // 姓名
+    private int grade;    // 年級
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getGrade() {
+        return grade;
+    }
+
+    public void setGrade(int grade) {
+        this.grade = grade;
+    }
+}
@@ -0,0 +1,121 @@
+package com.vincent.es.metrics;
+
+import com.vincent.es.util.BoundedCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以 Micrometer 記錄 repository 每種操作的延遲、傳輸位元組、bulk 項目結果與搜尋命中數。
+ * 延遲與大小都發布 histogram bucket，可在 Prometheus 端跨執行個體計算百分位數。
+ * 每種操作的 meter 在第一次使用時建立並保留，之後記錄時不需再查詢 registry。
+ */
+public class StudentEsMetrics {
+    private final MeterRegistry registry;
+    private final Map<String, Timer> succeededLatencies = new ConcurrentHashMap<>(); // 用戶端觀察到的延遲
+    private final Map<String, Timer> failedLatencies = new ConcurrentHashMap<>();
+    private final Map<String, Timer> tookLatencies = new ConcurrentHashMap<>();      // ES 回報的 took
+    private final Map<String, DistributionSummary> requestBytes = new ConcurrentHashMap<>();
+    private final Map<String, DistributionSummary> responseBytes = new ConcurrentHashMap<>();
+    private final Counter bulkItemsSucceeded;
+    private final Counter bulkItemsFailed;
+    private final DistributionSummary searchHits;
+
+    // 未接上任何 registry，記錄的數值會被捨棄
+    public StudentEsMetrics() {
+        this(new CompositeMeterRegistry());
+    }
+
+    public StudentEsMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.bulkItemsSucceeded = bulkItemCounter("success");
+        this.bulkItemsFailed = bulkItemCounter("failure");
+        this.searchHits = DistributionSummary.builder("es.repository.search.hits")
+                .description("Documents returned per search.")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public void recordLatency(String operation, long nanos, boolean succeeded) {
+        var timers = succeeded ? succeededLatencies : failedLatencies;
+        timers.computeIfAbsent(operation, op -> Timer.builder("es.repository.requests")
+                        .description("Client-observed latency of repository operations.")
+                        .tag("operation", op)
+                        .tag("outcome", succeeded ? "success" : "error")
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordTook(String operation, long tookMillis) {
+        tookLatencies.computeIfAbsent(operation, op -> Timer.builder("es.repository.took")
+                        .description("Server-side took reported by Elasticsearch.")
+                        .tag("operation", op)
+                        .publishPercentileHistogram()
+                        .register(registry))
+                .record(tookMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void recordRequestBytes(String operation, long bytes) {
+        requestBytes.computeIfAbsent(operation, op -> bytesSummary("es.transport.request.size", op,
+                        "HTTP request body bytes sent."))
+                .record(bytes);
+    }
+
+    public void recordResponseBytes(String operation, long bytes) {
+        responseBytes.computeIfAbsent(operation, op -> bytesSummary("es.transport.response.size", op,
+                        "HTTP response body bytes received."))
+                .record(bytes);
+    }
+
+    public void recordBulkItems(long succeeded, long failed) {
+        bulkItemsSucceeded.increment(succeeded);
+        bulkItemsFailed.increment(failed);
+    }
+
+    public void recordSearchHits(long hits) {
+        searchHits.record(hits);
+    }
+
+    // 命中率由 Prometheus 以 cache_gets_total 計算
+    public void registerCache(String name, BoundedCache<?, ?> cache) {
+        FunctionCounter.builder("cache.gets", cache, BoundedCache::getHitCount)
+                .description("Cache lookups by result.")
+                .tag("cache", name)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", cache, BoundedCache::getMissCount)
+                .description("Cache lookups by result.")
+                .tag("cache", name)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("cache.size", cache, BoundedCache::size)
+                .description("Entries currently held by the cache.")
+                .tag("cache", name)
+                .register(registry);
+    }
+
+    private Counter bulkItemCounter(String outcome) {
+        return Counter.builder("es.repository.bulk.items")
+                .description("Bulk items by outcome.")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private DistributionSummary bytesSummary(String name, String operation, String description) {
+        return DistributionSummary.builder(name)
+                .description(description)
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
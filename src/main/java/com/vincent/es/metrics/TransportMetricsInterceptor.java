@@ -0,0 +1,71 @@
+package com.vincent.es.metrics;
+
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * 加在 RestClient 的 HttpAsyncClient 上，依請求路徑分類記錄 HTTP body 的位元組數。
+ * 回應未帶 Content-Length 時（如 chunked）不計入。
+ */
+public class TransportMetricsInterceptor implements HttpRequestInterceptor, HttpResponseInterceptor {
+    private static final String OPERATION_ATTRIBUTE = TransportMetricsInterceptor.class.getName() + ".operation";
+
+    private final StudentEsMetrics metrics;
+
+    public TransportMetricsInterceptor(StudentEsMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void process(HttpRequest request, HttpContext context) {
+        var requestLine = request.getRequestLine();
+        var operation = classify(requestLine.getMethod(), requestLine.getUri());
+        context.setAttribute(OPERATION_ATTRIBUTE, operation);
+
+        var header = request.getFirstHeader("Content-Length");
+        if (header != null) {
+            metrics.recordRequestBytes(operation, Long.parseLong(header.getValue()));
+        }
+    }
+
+    @Override
+    public void process(HttpResponse response, HttpContext context) {
+        var operation = (String) context.getAttribute(OPERATION_ATTRIBUTE);
+        var entity = response.getEntity();
+        if (operation != null && entity != null && entity.getContentLength() >= 0) {
+            metrics.recordResponseBytes(operation, entity.getContentLength());
+        }
+    }
+
+    static String classify(String method, String uri) {
+        var queryStart = uri.indexOf('?');
+        var path = queryStart >= 0 ? uri.substring(0, queryStart) : uri;
+
+        if (path.contains("/_bulk")) {
+            return "bulk";
+        }
+        if (path.contains("/_search")) {
+            return "search";
+        }
+        if (path.contains("/_mget")) {
+            return "mget";
+        }
+        if (path.contains("/_create/")) {
+            return "insert";
+        }
+        if (path.contains("/_doc/")) {
+            switch (method) {
+                case "GET":
+                    return "get";
+                case "DELETE":
+                    return "delete";
+                default:
+                    return "save";
+            }
+        }
+        return "other";
+    }
+}
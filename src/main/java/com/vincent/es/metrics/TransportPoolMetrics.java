@@ -0,0 +1,36 @@
+package com.vincent.es.metrics;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.util.function.ToIntFunction;
+
+/**
+ * RestClient 連線池中各狀態的連線數量。
+ */
+public class TransportPoolMetrics implements MeterBinder {
+    private final PoolingNHttpClientConnectionManager connectionManager;
+
+    public TransportPoolMetrics(PoolingNHttpClientConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        register(registry, "leased", PoolStats::getLeased);
+        register(registry, "pending", PoolStats::getPending);
+        register(registry, "available", PoolStats::getAvailable);
+        register(registry, "max", PoolStats::getMax);
+    }
+
+    private void register(MeterRegistry registry, String state, ToIntFunction<PoolStats> value) {
+        Gauge.builder("es.transport.pool.connections", connectionManager,
+                        manager -> value.applyAsInt(manager.getTotalStats()))
+                .description("Connections in the transport pool by state.")
+                .tag("state", state)
+                .register(registry);
+    }
+}
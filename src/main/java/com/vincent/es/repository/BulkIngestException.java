@@ -0,0 +1,42 @@
+package com.vincent.es.repository;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 部分文件在重試後仍未寫入，或 bulk 請求本身失敗。
+ */
+public class BulkIngestException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final long succeeded;
+    private final long failed;
+    private final int[] failedStatuses; // 失敗項目的 HTTP 狀態，0 表示請求沒有取得回應
+
+    public BulkIngestException(BulkIngestResult result, Collection<Integer> failedStatuses) {
+        super(result.getFailed() + " of " + (result.getSucceeded() + result.getFailed())
+                + " documents were not indexed.");
+        this.succeeded = result.getSucceeded();
+        this.failed = result.getFailed();
+        this.failedStatuses = failedStatuses.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+    }
+
+    public BulkIngestResult getResult() {
+        return new BulkIngestResult(succeeded, failed);
+    }
+
+    public Set<Integer> getFailedStatuses() {
+        return Arrays.stream(failedStatuses).boxed().collect(Collectors.toSet());
+    }
+
+    /**
+     * 所有失敗都是文件內容或操作造成的 4xx（如 create 已存在的編號得到 409），重送相同內容也不會成功。
+     * 429 代表叢集忙碌，與 5xx 及連線失敗一樣不算在內。
+     */
+    public boolean isClientError() {
+        return failedStatuses.length > 0
+                && Arrays.stream(failedStatuses).allMatch(status -> status >= 400 && status < 500 && status != 429);
+    }
+}
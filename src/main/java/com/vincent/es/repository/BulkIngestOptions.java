@@ -0,0 +1,49 @@
+package com.vincent.es.repository;
+
+public class BulkIngestOptions {
+    private int maxDocuments = 1000;                 // 每批最多的文件數量
+    private long maxBytes = 5L * 1024 * 1024;        // 每批最大的位元組數
+    private int maxConcurrentRequests = 2;           // 同時送出的 bulk 請求數量
+    private int maxRetries = 3;                      // 失敗項目（如 429）的重試次數
+    private long initialBackoffMillis = 100;         // 首次重試前的等待時間，之後每次加倍
+
+    public int getMaxDocuments() {
+        return maxDocuments;
+    }
+
+    public void setMaxDocuments(int maxDocuments) {
+        this.maxDocuments = maxDocuments;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public int getMaxConcurrentRequests() {
+        return maxConcurrentRequests;
+    }
+
+    public void setMaxConcurrentRequests(int maxConcurrentRequests) {
+        this.maxConcurrentRequests = maxConcurrentRequests;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    public void setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+}
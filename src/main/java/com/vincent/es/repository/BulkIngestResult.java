@@ -0,0 +1,19 @@
+package com.vincent.es.repository;
+
+public class BulkIngestResult {
+    private final long succeeded; // 成功寫入的文件數量
+    private final long failed;    // 重試後仍失敗的文件數量
+
+    BulkIngestResult(long succeeded, long failed) {
+        this.succeeded = succeeded;
+        this.failed = failed;
+    }
+
+    public long getSucceeded() {
+        return succeeded;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+}
@@ -0,0 +1,37 @@
+package com.vincent.es.repository;
+
+import com.vincent.es.entity.Student;
+
+public class BulkItemResult {
+    private final Student document; // 送出的文件
+    private final int status;       // ES 回傳的 HTTP 狀態碼，請求本身失敗時為 0
+    private final String error;     // 失敗原因，成功時為 null
+    private final int attempts;     // 總共嘗試的次數
+
+    BulkItemResult(Student document, int status, String error, int attempts) {
+        this.document = document;
+        this.status = status;
+        this.error = error;
+        this.attempts = attempts;
+    }
+
+    public boolean isSucceeded() {
+        return error == null;
+    }
+
+    public Student getDocument() {
+        return document;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+}
@@ -0,0 +1,40 @@
+package com.vincent.es.repository;
+
+import com.vincent.es.entity.Student;
+
+/**
+ * 大量載入的工作階段，開啟時已暫停 refresh 並移除副本。
+ * 關閉時送出剩餘文件，並且無論載入是否成功都會還原索引設定。
+ */
+public class BulkLoadSession implements AutoCloseable {
+    private final StudentBulkIngester ingester;
+    private final Runnable onClose;
+    private boolean closed;
+
+    BulkLoadSession(StudentBulkIngester ingester, Runnable onClose) {
+        this.ingester = ingester;
+        this.onClose = onClose;
+    }
+
+    public void add(Student doc) {
+        ingester.add(doc);
+    }
+
+    public BulkIngestResult getResult() {
+        return ingester.getResult();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            ingester.close();
+        } finally {
+            onClose.run();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.vincent.es.repository;
+
+import java.util.Objects;
+
+/**
+ * 文件在 ES 中的版本，寫入時帶上 if_seq_no 與 if_primary_term，版本不符即代表已被他人修改。
+ */
+public class DocumentVersion {
+    private final long seqNo;       // 文件最後一次寫入的序號
+    private final long primaryTerm; // 寫入時主分片的任期
+
+    public DocumentVersion(long seqNo, long primaryTerm) {
+        this.seqNo = seqNo;
+        this.primaryTerm = primaryTerm;
+    }
+
+    /**
+     * 由 toETag 產生的字串還原，格式不符時拋出 IllegalArgumentException。
+     */
+    public static DocumentVersion fromETag(String eTag) {
+        var value = eTag.trim();
+        if (value.startsWith("W/")) {
+            value = value.substring(2);
+        }
+        value = value.replace("\"", "");
+
+        var parts = value.split("-");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid ETag: " + eTag);
+        }
+
+        try {
+            return new DocumentVersion(Long.parseLong(parts[1]), Long.parseLong(parts[0]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid ETag: " + eTag, e);
+        }
+    }
+
+    public long getSeqNo() {
+        return seqNo;
+    }
+
+    public long getPrimaryTerm() {
+        return primaryTerm;
+    }
+
+    public String toETag() {
+        return "\"" + primaryTerm + "-" + seqNo + "\"";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof DocumentVersion)) {
+            return false;
+        }
+        var that = (DocumentVersion) o;
+        return seqNo == that.seqNo && primaryTerm == that.primaryTerm;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(seqNo, primaryTerm);
+    }
+}
@@ -0,0 +1,270 @@
+package com.vincent.es.repository;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.CreateOperation;
+import com.vincent.es.entity.Student;
+import com.vincent.es.metrics.StudentEsMetrics;
+import com.vincent.es.util.IOSupplier;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 將文件依數量與位元組大小分批，以有限的並行數送出 bulk 請求。
+ * 被拒絕的項目（如 429）會以指數退避只重送該項目，每個項目的結果交給 listener。
+ * listener 可能由多個執行緒同時呼叫。
+ */
+public class StudentBulkIngester implements AutoCloseable {
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(429, 503);
+
+    private final ElasticsearchClient client;
+    private final String indexName;
+    private final BulkIngestOptions options;
+    private final Consumer<BulkItemResult> listener;
+    private final StudentEsMetrics metrics;
+    private final Refresh refresh;
+    private final ExecutorService executor;
+    private final Semaphore inFlightPermits;
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private List<Student> buffer = new ArrayList<>();
+    private long bufferBytes;
+    private boolean closed;
+
+    public StudentBulkIngester(
+            ElasticsearchClient client, String indexName,
+            BulkIngestOptions options, Consumer<BulkItemResult> listener) {
+        this(client, indexName, options, listener, Executors.defaultThreadFactory(), new StudentEsMetrics(), null);
+    }
+
+    // refresh 套用於每個 bulk 請求，null 表示使用 ES 的預設值 (false)
+    public StudentBulkIngester(
+            ElasticsearchClient client, String indexName, BulkIngestOptions options,
+            Consumer<BulkItemResult> listener, ThreadFactory threadFactory, StudentEsMetrics metrics, Refresh refresh) {
+
+        this.client = client;
+        this.indexName = indexName;
+        this.options = options;
+        this.listener = listener == null ? r -> {} : listener;
+        this.metrics = metrics;
+        this.refresh = refresh;
+        this.executor = Executors.newFixedThreadPool(options.getMaxConcurrentRequests(), threadFactory);
+        this.inFlightPermits = new Semaphore(options.getMaxConcurrentRequests());
+    }
+
+    /**
+     * 加入一筆文件，達到分批門檻時送出。
+     * 進行中的請求已達上限時會阻塞，藉此對呼叫端施加背壓。
+     */
+    public void add(Student doc) {
+        var bytes = estimateBytes(doc);
+
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Ingester is already closed.");
+            }
+
+            if (!buffer.isEmpty() && bufferBytes + bytes > options.getMaxBytes()) {
+                flushBuffer();
+            }
+
+            buffer.add(doc);
+            bufferBytes += bytes;
+
+            if (buffer.size() >= options.getMaxDocuments() || bufferBytes >= options.getMaxBytes()) {
+                flushBuffer();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void flush() {
+        lock.lock();
+        try {
+            flushBuffer();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 送出剩餘文件，並等待所有進行中的請求完成。
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+
+            flushBuffer();
+            closed = true;
+
+            var permits = options.getMaxConcurrentRequests();
+            inFlightPermits.acquireUninterruptibly(permits);
+            inFlightPermits.release(permits);
+            executor.shutdown();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public BulkIngestResult getResult() {
+        return new BulkIngestResult(succeeded.sum(), failed.sum());
+    }
+
+    // 以 ReentrantLock 而非 synchronized 保護緩衝區，在虛擬執行緒上等待 permit 時不會釘住載體執行緒
+    private void flushBuffer() {
+        if (buffer.isEmpty()) {
+            return;
+        }
+
+        var batch = buffer;
+        buffer = new ArrayList<>();
+        bufferBytes = 0;
+
+        inFlightPermits.acquireUninterruptibly();
+        try {
+            executor.execute(() -> {
+                try {
+                    send(batch);
+                } finally {
+                    inFlightPermits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlightPermits.release();
+            throw e;
+        }
+    }
+
+    private void send(List<Student> batch) {
+        var pending = batch;
+        for (var attempt = 1; ; attempt++) {
+            BulkResponse response;
+            var start = System.nanoTime();
+            try {
+                var request = toBulkRequest(pending);
+                response = execute(() -> client.bulk(request));
+                metrics.recordLatency("bulk", System.nanoTime() - start, true);
+                metrics.recordTook("bulk", response.took());
+            } catch (RuntimeException e) {
+                metrics.recordLatency("bulk", System.nanoTime() - start, false);
+                for (var doc : pending) {
+                    reportFailure(doc, 0, String.valueOf(e.getMessage()), attempt);
+                }
+                return;
+            }
+
+            var retries = new ArrayList<Student>();
+            var items = response.items();
+            for (var i = 0; i < items.size(); i++) {
+                var item = items.get(i);
+                var doc = pending.get(i);
+
+                if (item.error() == null) {
+                    doc.setId(item.id());
+                    succeeded.increment();
+                    metrics.recordBulkItems(1, 0);
+                    listener.accept(new BulkItemResult(doc, item.status(), null, attempt));
+                } else if (RETRYABLE_STATUSES.contains(item.status()) && attempt <= options.getMaxRetries()) {
+                    retries.add(doc);
+                } else {
+                    reportFailure(doc, item.status(), item.error().reason(), attempt);
+                }
+            }
+
+            if (retries.isEmpty()) {
+                return;
+            }
+
+            pending = retries;
+            backoff(attempt);
+        }
+    }
+
+    BulkRequest toBulkRequest(List<Student> docs) {
+        var builder = new BulkRequest.Builder()
+                .index(indexName)
+                .refresh(refresh);
+
+        docs.forEach(doc -> {
+            var createOp = new CreateOperation.Builder<Student>()
+                    .id(doc.getId())
+                    .document(doc)
+                    .build();
+            var bulkOp = BulkOperation.of(b -> b.create(createOp));
+            builder.operations(bulkOp);
+        });
+
+        return builder.build();
+    }
+
+    private void reportFailure(Student doc, int status, String error, int attempts) {
+        failed.increment();
+        metrics.recordBulkItems(0, 1);
+        listener.accept(new BulkItemResult(doc, status, error, attempts));
+    }
+
+    private void backoff(int attempt) {
+        var millis = options.getInitialBackoffMillis() << (attempt - 1);
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // 以 transport 的 mapper 序列化至計數串流，估算文件在 bulk body 中的大小
+    private long estimateBytes(Student doc) {
+        var mapper = client._jsonpMapper();
+        var counter = new CountingOutputStream();
+        var generator = mapper.jsonProvider().createGenerator(counter);
+        mapper.serialize(doc, generator);
+        generator.close();
+
+        return counter.count;
+    }
+
+    @SuppressWarnings({"squid:S112"})
+    private <V> V execute(IOSupplier<V> supplier) {
+        try {
+            return supplier.get();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
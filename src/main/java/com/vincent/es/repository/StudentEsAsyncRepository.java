@@ -0,0 +1,243 @@
+package com.vincent.es.repository;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch.core.*;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.CreateOperation;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.vincent.es.entity.Student;
+import com.vincent.es.metrics.StudentEsMetrics;
+import com.vincent.es.util.AggregationResult;
+import com.vincent.es.util.BoundedCache;
+import com.vincent.es.util.SearchInfo;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 與 StudentEsRepository 相同的操作，但以 ElasticsearchAsyncClient 送出請求，
+ * 等待回應期間不佔用呼叫端的執行緒。
+ */
+public class StudentEsAsyncRepository {
+    private final ElasticsearchAsyncClient client;
+    private final String indexName;
+    private final BulkIngestOptions bulkIngestOptions;
+    private StudentEsMetrics metrics = new StudentEsMetrics();
+    private BoundedCache<String, Optional<VersionedDocument<Student>>> findByIdCache; // 與同步 repository 共用，寫入時使其失效
+    private BoundedCache<String, List<Student>> findCache;
+
+    public StudentEsAsyncRepository(ElasticsearchAsyncClient client, String indexName) {
+        this(client, indexName, new BulkIngestOptions());
+    }
+
+    public StudentEsAsyncRepository(
+            ElasticsearchAsyncClient client, String indexName, BulkIngestOptions bulkIngestOptions) {
+        this.client = client;
+        this.indexName = indexName;
+        this.bulkIngestOptions = bulkIngestOptions;
+    }
+
+    public void setMetrics(StudentEsMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setFindByIdCache(BoundedCache<String, Optional<VersionedDocument<Student>>> findByIdCache) {
+        this.findByIdCache = findByIdCache;
+    }
+
+    public void setFindCache(BoundedCache<String, List<Student>> findCache) {
+        this.findCache = findCache;
+    }
+
+    public CompletableFuture<Student> insert(Student doc) {
+        var request = new CreateRequest.Builder<Student>()
+                .index(indexName)
+                .id(doc.getId())
+                .document(doc)
+                .build();
+
+        return record("insert", () -> client.create(request))
+                .thenApply(createResponse -> {
+                    doc.setId(createResponse.id());
+                    invalidate(doc.getId());
+                    return doc;
+                });
+    }
+
+    // 依 bulkIngestOptions 的文件數量分批，前一批完成後才送出下一批
+    // 與同步 repository 相同，送完所有批次後若有文件未寫入，以 BulkIngestException 結束
+    public CompletableFuture<List<Student>> insert(List<Student> docs) {
+        var batchSize = bulkIngestOptions.getMaxDocuments();
+        var succeeded = new AtomicLong();
+        var failedStatuses = new ConcurrentLinkedQueue<Integer>(); // 每個失敗項目的 HTTP 狀態
+        CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
+
+        for (var from = 0; from < docs.size(); from += batchSize) {
+            var batch = docs.subList(from, Math.min(from + batchSize, docs.size()));
+            future = future.thenCompose(v -> insertBatch(batch, succeeded, failedStatuses));
+        }
+
+        return future.thenApply(v -> {
+            if (!failedStatuses.isEmpty()) {
+                var result = new BulkIngestResult(succeeded.get(), failedStatuses.size());
+                throw new BulkIngestException(result, failedStatuses);
+            }
+            return docs;
+        });
+    }
+
+    // 與同步 repository 共用快取的載入狀態，載入期間發生的寫入會使結果不被放入快取
+    // 經由快取取得時回傳複本，避免呼叫端修改到快取中的文件
+    public CompletableFuture<Optional<Student>> findById(String id) {
+        if (findByIdCache == null) {
+            return getById(id).thenApply(student -> student.map(VersionedDocument::getDocument));
+        }
+
+        return findByIdCache.getAsync(id, this::getById)
+                .thenApply(student -> student.map(VersionedDocument::getDocument).map(Student::copy));
+    }
+
+    public CompletableFuture<Student> save(Student doc) {
+        var request = new IndexRequest.Builder<Student>()
+                .index(indexName)
+                .id(doc.getId())
+                .document(doc)
+                .build();
+
+        return record("save", () -> client.index(request))
+                .thenApply(indexResponse -> {
+                    doc.setId(indexResponse.id());
+                    invalidate(doc.getId());
+                    return doc;
+                });
+    }
+
+    public CompletableFuture<Void> deleteById(String id) {
+        var request = new DeleteRequest.Builder()
+                .index(indexName)
+                .id(id)
+                .build();
+
+        return record("delete", () -> client.delete(request))
+                .thenApply(deleteResponse -> {
+                    invalidate(id);
+                    return null;
+                });
+    }
+
+    public CompletableFuture<List<Student>> find(SearchInfo info) {
+        return find(info, Student.class);
+    }
+
+    // SearchInfo 未指定 includes 時，只取回 projection 宣告的欄位
+    public <T> CompletableFuture<List<T>> find(SearchInfo info, Class<T> projection) {
+        var request = new SearchRequest.Builder()
+                .index(indexName)
+                .query(info.toQuery())
+                .sort(info.getSortOptions())
+                .from(info.getFrom())
+                .size(info.getSize())
+                .source(projection == Student.class ? info.toSourceConfig() : info.toSourceConfig(projection))
+                .build();
+
+        return record("search", () -> client.search(request, projection))
+                .thenApply(searchResponse -> {
+                    metrics.recordTook("search", searchResponse.took());
+                    metrics.recordSearchHits(searchResponse.hits().hits().size());
+                    return searchResponse
+                            .hits()
+                            .hits()
+                            .stream()
+                            .map(Hit::source)
+                            .collect(Collectors.toList());
+                });
+    }
+
+    public CompletableFuture<AggregationResult> aggregate(SearchInfo info) {
+        var request = new SearchRequest.Builder()
+                .index(indexName)
+                .query(info.toQuery())
+                .aggregations(info.getAggregations())
+                .size(0)
+                .build();
+
+        return record("aggregate", () -> client.search(request, Void.class))
+                .thenApply(searchResponse -> {
+                    metrics.recordTook("aggregate", searchResponse.took());
+                    return AggregationResult.of(searchResponse);
+                });
+    }
+
+    private CompletableFuture<Optional<VersionedDocument<Student>>> getById(String id) {
+        var request = new GetRequest.Builder()
+                .index(indexName)
+                .id(id)
+                .build();
+
+        return record("get", () -> client.get(request, Student.class))
+                .thenApply(VersionedDocument::of);
+    }
+
+    private CompletableFuture<Void> insertBatch(
+            List<Student> docs, AtomicLong succeeded, Collection<Integer> failedStatuses) {
+        var builder = new BulkRequest.Builder().index(indexName);
+
+        docs.forEach(doc -> {
+            var createOp = new CreateOperation.Builder<Student>()
+                    .id(doc.getId())
+                    .document(doc)
+                    .build();
+            var bulkOp = BulkOperation.of(b -> b.create(createOp));
+            builder.operations(bulkOp);
+        });
+
+        return record("bulk", () -> client.bulk(builder.build()))
+                .handle((bulkResponse, error) -> {
+                    // 請求本身失敗時整批都未寫入，狀態以 0 表示沒有取得回應
+                    if (error != null) {
+                        docs.forEach(doc -> failedStatuses.add(0));
+                        metrics.recordBulkItems(0, docs.size());
+                        return null;
+                    }
+
+                    metrics.recordTook("bulk", bulkResponse.took());
+                    var items = bulkResponse.items();
+                    var failed = 0;
+                    for (var i = 0; i < items.size(); i++) {
+                        var item = items.get(i);
+                        if (item.error() == null) {
+                            docs.get(i).setId(item.id());
+                            invalidate(item.id());
+                            succeeded.incrementAndGet();
+                        } else {
+                            failedStatuses.add(item.status());
+                            failed++;
+                        }
+                    }
+                    metrics.recordBulkItems(items.size() - failed, failed);
+                    return null;
+                });
+    }
+
+    private void invalidate(String id) {
+        if (findByIdCache != null && id != null) {
+            findByIdCache.invalidate(id);
+        }
+        if (findCache != null) {
+            findCache.invalidateAll();
+        }
+    }
+
+    // 記錄從送出請求到 future 完成的延遲與是否失敗
+    private <V> CompletableFuture<V> record(String operation, Supplier<CompletableFuture<V>> call) {
+        var start = System.nanoTime();
+        return call.get().whenComplete((result, error) ->
+                metrics.recordLatency(operation, System.nanoTime() - start, error == null));
+    }
+}
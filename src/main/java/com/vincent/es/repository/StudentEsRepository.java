@@ -1,151 +1,1415 @@
 package com.vincent.es.repository;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
-import co.elastic.clients.elasticsearch._types.mapping.DateProperty;
-import co.elastic.clients.elasticsearch._types.mapping.Property;
-import co.elastic.clients.elasticsearch._types.mapping.TypeMapping;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.Result;
+import co.elastic.clients.elasticsearch._types.Script;
+import co.elastic.clients.elasticsearch._types.SlicedScroll;
+import co.elastic.clients.elasticsearch._types.SlicesCalculation;
+import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.VersionType;
+import co.elastic.clients.elasticsearch._types.mapping.*;
 import co.elastic.clients.elasticsearch.core.*;
-import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
-import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
-import co.elastic.clients.elasticsearch.core.bulk.CreateOperation;
+import co.elastic.clients.elasticsearch.core.get.GetResult;
+import co.elastic.clients.elasticsearch.core.mget.MultiGetResponseItem;
+import co.elastic.clients.elasticsearch.core.msearch.RequestItem;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.indices.CreateIndexRequest;
 import co.elastic.clients.elasticsearch.indices.DeleteIndexRequest;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import co.elastic.clients.elasticsearch.indices.PutIndicesSettingsRequest;
+import co.elastic.clients.elasticsearch.indices.SegmentSortOrder;
+import co.elastic.clients.elasticsearch.indices.UpdateAliasesRequest;
+import co.elastic.clients.elasticsearch.tasks.GetTasksResponse;
+import co.elastic.clients.json.JsonData;
+import co.elastic.clients.json.JsonpDeserializer;
+import co.elastic.clients.json.JsonpUtils;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
 import com.vincent.es.entity.Student;
+import com.vincent.es.metrics.StudentEsMetrics;
+import com.vincent.es.util.AggregationResult;
+import com.vincent.es.util.BoundedCache;
+import com.vincent.es.util.RequestCoalescer;
+import com.vincent.es.util.CursorPage;
 import com.vincent.es.util.IOSupplier;
+import com.vincent.es.util.SearchCursor;
 import com.vincent.es.util.SearchInfo;
+import com.vincent.es.util.SearchUtils;
+import jakarta.json.stream.JsonParser;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.RestClient;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.CRC32;
 
 public class StudentEsRepository {
+    private static final String PIT_KEEP_ALIVE = "1m";
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final int DEFAULT_SEARCH_SIZE = 10; // 未指定 size 時 ES 回傳的筆數
+    private static final JsonpDeserializer<List<String>> SORT_VALUES_DESERIALIZER =
+            JsonpDeserializer.arrayDeserializer(JsonpDeserializer.stringDeserializer());
+    private static final int MAX_EXPORT_PARALLELISM = 8;
+    private static final long TASK_POLL_INTERVAL_MILLIS = 1000;
+    private static final int UPDATE_RETRY_ON_CONFLICT = 3;
+    private static final String MUSTACHE = "mustache";
+
     private final ElasticsearchClient client;
     private final String indexName;
+    private final BulkIngestOptions bulkIngestOptions;
+    private StudentIndexSettings indexSettings = new StudentIndexSettings();
+    private ThreadFactory threadFactory = Executors.defaultThreadFactory(); // bulk 與匯出並行工作使用的執行緒
+    private StudentEsMetrics metrics = new StudentEsMetrics();
+    private BoundedCache<String, Optional<VersionedDocument<Student>>> findByIdCache; // findById 的快取（連同版本），null 表示不使用
+    private BoundedCache<String, List<Student>> findCache;         // find 的查詢結果快取，任何寫入都會整個清空
+    private RequestCoalescer<String, Optional<VersionedDocument<Student>>> findByIdCoalescer; // 合併短時間內的 findById 為一次 mget
+    private RequestCoalescer<SearchKey, SearchOutcome> findCoalescer;      // 合併短時間內的 find 為一次 msearch
+    private RestClient restClient; // findEach 直接以低階 client 送出請求，自行解析回應
 
     public StudentEsRepository(ElasticsearchClient client, String indexName) {
+        this(client, indexName, new BulkIngestOptions());
+    }
+
+    public StudentEsRepository(ElasticsearchClient client, String indexName, BulkIngestOptions bulkIngestOptions) {
         this.client = client;
         this.indexName = indexName;
+        this.bulkIngestOptions = bulkIngestOptions;
+        if (client._transport() instanceof RestClientTransport) {
+            this.restClient = ((RestClientTransport) client._transport()).restClient();
+        }
+    }
+
+    // transport 經過包裝時，需另外提供底層的 RestClient
+    public void setRestClient(RestClient restClient) {
+        this.restClient = restClient;
+    }
+
+    public void setThreadFactory(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    public void setIndexSettings(StudentIndexSettings indexSettings) {
+        this.indexSettings = indexSettings;
+    }
+
+    public void setMetrics(StudentEsMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setFindByIdCache(BoundedCache<String, Optional<VersionedDocument<Student>>> findByIdCache) {
+        this.findByIdCache = findByIdCache;
     }
 
-    public void init() {
-        deleteIndex();
+    public void setFindCache(BoundedCache<String, List<Student>> findCache) {
+        this.findCache = findCache;
+    }
+
+    /**
+     * 啟用後，window 時間內陸續呼叫的 findById 會合併成一次 mget。
+     */
+    public void enableFindByIdCoalescing(Duration window, int maxBatchSize) {
+        this.findByIdCoalescer = new RequestCoalescer<>(window, maxBatchSize, this::mgetById, threadFactory);
+    }
+
+    /**
+     * 啟用後，window 時間內由不同執行緒呼叫的 find 會合併成一次 msearch，內容相同的查詢只執行一次。
+     */
+    public void enableFindCoalescing(Duration window, int maxBatchSize) {
+        this.findCoalescer = new RequestCoalescer<>(window, maxBatchSize, this::msearchByKey, threadFactory);
+    }
+
+    /**
+     * 確認別名 indexName 指向符合目前 mapping 與設定的索引，不會刪除既有資料。
+     * 別名與索引都不存在時直接建立；mapping 或設定有變更時，於背景 reindex 至新版索引後切換別名，
+     * 期間讀寫仍使用舊索引，只有切換前補上差異時會暫停寫入。回傳的 future 在別名指向新版索引後完成。
+     */
+    public CompletableFuture<Void> init() {
+        var targetIndex = getVersionedIndexName();
+
+        if (existsAlias()) {
+            var currentIndices = getAliasedIndices();
+            if (currentIndices.contains(targetIndex)) {
+                return CompletableFuture.completedFuture(null);
+            }
+            return CompletableFuture.runAsync(
+                    () -> migrate(currentIndices, targetIndex, false), r -> threadFactory.newThread(r).start());
+        }
+
+        // 舊版直接以 indexName 建立索引，遷移時一併改為別名
+        if (existsIndex(indexName)) {
+            var legacyIndices = List.of(indexName);
+            return CompletableFuture.runAsync(
+                    () -> migrate(legacyIndices, targetIndex, true), r -> threadFactory.newThread(r).start());
+        }
+
         createIndex();
+        return CompletableFuture.completedFuture(null);
     }
 
+    /**
+     * 建立目前版本的索引，並設為別名 indexName 的寫入索引。
+     */
     public void createIndex() {
-        var propertyMap = getPropertyMappings();
-        var request = new CreateIndexRequest.Builder()
-                .index(indexName)
-                .mappings(TypeMapping.of(b -> b.properties(propertyMap)))
-                .build();
-
-        execute(() -> client.indices().create(request));
+        createIndex(getVersionedIndexName(), true);
     }
 
+    /**
+     * 刪除別名 indexName 背後的所有索引。
+     */
     public void deleteIndex() {
-        var request = DeleteIndexRequest.of(b -> b.index(indexName));
-        execute(() -> client.indices().delete(request));
+        List<String> indices;
+        if (existsAlias()) {
+            indices = getAliasedIndices();
+        } else if (existsIndex(indexName)) {
+            indices = List.of(indexName);
+        } else {
+            indices = List.of();
+        }
+
+        if (!indices.isEmpty()) {
+            deleteIndices(indices);
+        }
+        invalidateAll();
     }
 
     public Student insert(Student doc) {
+        return insert(doc, null);
+    }
+
+    /**
+     * refresh 為 WaitFor 時等到下次 refresh 後才回應，True 則立即 refresh，null 與 False 不等待。
+     */
+    public Student insert(Student doc, Refresh refresh) {
         var request = new CreateRequest.Builder<Student>()
                 .index(indexName)
                 .id(doc.getId())
                 .document(doc)
+                .refresh(refresh)
                 .build();
 
-        return execute(() -> {
+        return execute("insert", () -> {
             var createResponse = client.create(request);
             doc.setId(createResponse.id());
+            invalidate(doc.getId());
             return doc;
         });
     }
 
+    // 有任何文件未寫入時拋出 BulkIngestException，不會只回傳部分成功的結果
     public List<Student> insert(List<Student> docs) {
-        var builder = new BulkRequest.Builder().index(indexName);
-
-        docs.forEach(doc -> {
-            var createOp = new CreateOperation.Builder<Student>()
-                    .id(doc.getId())
-                    .document(doc)
-                    .build();
-            var bulkOp = BulkOperation.of(b -> b.create(createOp));
-            builder.operations(bulkOp);
+        var failedStatuses = ConcurrentHashMap.<Integer>newKeySet();
+        var ingester = bulkIngester(item -> {
+            if (!item.isSucceeded()) {
+                failedStatuses.add(item.getStatus());
+            }
         });
+        try (ingester) {
+            docs.forEach(ingester::add);
+        }
+
+        var result = ingester.getResult();
+        if (result.getFailed() > 0) {
+            throw new BulkIngestException(result, failedStatuses);
+        }
+        return docs;
+    }
+
+    public BulkIngestResult insert(Iterable<Student> docs, Consumer<BulkItemResult> listener) {
+        return insert(docs, listener, null);
+    }
+
+    // 要求 True 時只在全部寫入後 refresh 一次，而不是每批各自 refresh
+    public BulkIngestResult insert(Iterable<Student> docs, Consumer<BulkItemResult> listener, Refresh refresh) {
+        var batchRefresh = refresh == Refresh.True ? null : refresh;
+        var ingester = bulkIngester(listener, batchRefresh);
+        try (ingester) {
+            docs.forEach(ingester::add);
+        }
 
-        var bulkRequest = builder.build();
+        if (refresh == Refresh.True) {
+            refresh();
+        }
+        return ingester.getResult();
+    }
+
+    public StudentBulkIngester bulkIngester(Consumer<BulkItemResult> listener) {
+        return bulkIngester(listener, null);
+    }
 
-        return execute(() -> {
-            var bulkResponse = client.bulk(bulkRequest);
-            List<BulkResponseItem> items = bulkResponse.items();
-            for (var i = 0; i < items.size(); i++) {
-                var id = items.get(i).id();
-                docs.get(i).setId(id);
+    public StudentBulkIngester bulkIngester(Consumer<BulkItemResult> listener, Refresh refresh) {
+        // 寫入成功的文件需讓快取失效，以免先前快取的「不存在」結果過時
+        Consumer<BulkItemResult> cacheListener = result -> {
+            if (result.isSucceeded()) {
+                invalidate(result.getDocument().getId());
             }
+            if (listener != null) {
+                listener.accept(result);
+            }
+        };
 
-            return docs;
-        });
+        return new StudentBulkIngester(
+                client, indexName, bulkIngestOptions, cacheListener, threadFactory, metrics, refresh);
+    }
+
+    /**
+     * 開始大量載入：暫停 refresh 並將副本數設為 0，寫入期間不需產生 segment 與複製資料。
+     * 關閉工作階段時還原為開始前讀到的設定（保留維運人員調整過的值）並 refresh，
+     * forceMerge 為 true 時再合併為單一 segment。
+     */
+    public BulkLoadSession openBulkLoadSession(boolean forceMerge, Consumer<BulkItemResult> listener) {
+        var previousSettings = getRefreshAndReplicaSettings();
+        updateIndexSettings(indexName, IndexSettings.of(b -> b
+                .refreshInterval(t -> t.time("-1"))
+                .numberOfReplicas("0")));
+
+        try {
+            return new BulkLoadSession(bulkIngester(listener), () -> finishBulkLoad(previousSettings, forceMerge));
+        } catch (RuntimeException e) {
+            finishBulkLoad(previousSettings, false);
+            throw e;
+        }
+    }
+
+    public BulkIngestResult bulkLoad(Iterable<Student> docs, boolean forceMerge, Consumer<BulkItemResult> listener) {
+        var session = openBulkLoadSession(forceMerge, listener);
+        try (session) {
+            docs.forEach(session::add);
+        }
+
+        return session.getResult();
+    }
+
+    /**
+     * 立即 refresh，讓目前為止的寫入都能被搜尋到。
+     */
+    public void refresh() {
+        execute("refresh", () -> client.indices().refresh(b -> b.index(indexName)));
     }
 
     public Optional<Student> findById(String id) {
-        var request = new GetRequest.Builder()
-                .index(indexName)
-                .id(id)
-                .build();
+        return findVersionedById(id).map(VersionedDocument::getDocument);
+    }
 
-        var getResponse = execute(() -> client.get(request, Student.class));
-        return Optional.ofNullable(getResponse.source());
+    /**
+     * 連同版本一起讀取，供之後以 save 或 update 進行樂觀鎖定的寫入。
+     * 快取中的文件與版本一起存放，寫入時會使其失效，因此取得的版本不會比文件內容舊。
+     * 經由快取取得的是文件的複本，呼叫端修改後即使寫入失敗，也不會影響其他讀取者。
+     */
+    public Optional<VersionedDocument<Student>> findVersionedById(String id) {
+        return findByIdCache == null
+                ? getById(id)
+                : findByIdCache.get(id, this::getById).map(doc -> doc.copy(Student::copy));
+    }
+
+    /**
+     * 以一次 mget 取得多筆文件，結果依傳入的順序排列，不存在的編號會被略過。
+     */
+    public List<Student> findAllById(Collection<String> ids) {
+        var uniqueIds = new LinkedHashSet<>(ids);
+        // 經由快取的載入狀態寫入，mget 期間發生的寫入會使結果不被放入快取
+        var result = findByIdCache == null
+                ? mgetById(uniqueIds)
+                : findByIdCache.getAll(uniqueIds, this::mgetById);
+
+        var docs = uniqueIds.stream()
+                .map(result::get)
+                .flatMap(Optional::stream)
+                .map(VersionedDocument::getDocument);
+
+        // 與 findVersionedById 相同，快取中的文件以複本回傳
+        return (findByIdCache == null ? docs : docs.map(Student::copy))
+                .collect(Collectors.toList());
     }
 
     public Student save(Student doc) {
-        var request = new IndexRequest.Builder<Student>()
+        return save(doc, null);
+    }
+
+    public Student save(Student doc, Refresh refresh) {
+        return save(doc, null, refresh).getDocument();
+    }
+
+    /**
+     * expectedVersion 不為 null 時，只有文件仍是該版本才會寫入，否則拋出 VersionConflictException。
+     */
+    public VersionedDocument<Student> save(Student doc, DocumentVersion expectedVersion, Refresh refresh) {
+        var builder = new IndexRequest.Builder<Student>()
                 .index(indexName)
                 .id(doc.getId())
                 .document(doc)
-                .build();
+                .refresh(refresh);
+        if (expectedVersion != null) {
+            builder
+                    .ifSeqNo(expectedVersion.getSeqNo())
+                    .ifPrimaryTerm(expectedVersion.getPrimaryTerm());
+        }
+        var request = builder.build();
 
-        return execute(() -> {
+        return executeVersioned("save", doc.getId(), () -> {
             var indexResponse = client.index(request);
             doc.setId(indexResponse.id());
-            return doc;
+            invalidate(doc.getId());
+            return new VersionedDocument<>(doc, new DocumentVersion(indexResponse.seqNo(), indexResponse.primaryTerm()));
         });
     }
 
-    public void deleteById(String id) {
-        var request = new DeleteRequest.Builder()
+    /**
+     * 以 _update API 只送出要變更的欄位，內容與現有文件相同時 ES 不會重新寫入 (detect_noop)。
+     * 文件不存在時回傳 Result.NotFound。
+     */
+    public Result update(String id, Map<String, Object> fields) {
+        return update(id, fields, null);
+    }
+
+    public Result update(String id, Map<String, Object> fields, Refresh refresh) {
+        return update(id, fields, null, refresh);
+    }
+
+    /**
+     * expectedVersion 不為 null 時，只有文件仍是該版本才會更新，否則拋出 VersionConflictException；
+     * 為 null 時，與其他寫入衝突會由 ES 重新讀取文件後再套用，最多 UPDATE_RETRY_ON_CONFLICT 次。
+     */
+    public Result update(String id, Map<String, Object> fields, DocumentVersion expectedVersion, Refresh refresh) {
+        var builder = new UpdateRequest.Builder<Student, Map<String, Object>>()
                 .index(indexName)
                 .id(id)
+                .doc(fields)
+                .detectNoop(true)
+                .refresh(refresh);
+        if (expectedVersion == null) {
+            builder.retryOnConflict(UPDATE_RETRY_ON_CONFLICT);
+        } else {
+            builder
+                    .ifSeqNo(expectedVersion.getSeqNo())
+                    .ifPrimaryTerm(expectedVersion.getPrimaryTerm());
+        }
+
+        return update(id, builder.build());
+    }
+
+    // 由 script 在 ES 上修改文件，script 可設定 ctx.op = 'none' 表示不需寫入
+    public Result update(String id, Script script, Refresh refresh) {
+        var request = new UpdateRequest.Builder<Student, Object>()
+                .index(indexName)
+                .id(id)
+                .script(script)
+                .retryOnConflict(UPDATE_RETRY_ON_CONFLICT)
+                .refresh(refresh)
+                .build();
+
+        return update(id, request);
+    }
+
+    /**
+     * 對所有符合條件的文件執行 script，完成後 refresh 並回傳被更新的文件數量。
+     * 以背景 task 執行，版本衝突的文件會被略過而不中止整個作業。
+     */
+    public long updateByQuery(SearchInfo info, Script script) {
+        var request = new UpdateByQueryRequest.Builder()
+                .index(indexName)
+                .query(info.toQuery())
+                .script(script)
+                .conflicts(Conflicts.Proceed)
+                .slices(b -> b.computed(SlicesCalculation.Auto))
+                .refresh(true)
+                .waitForCompletion(false)
                 .build();
 
-        execute(() -> client.delete(request));
+        var taskId = execute("update_by_query", () -> client.updateByQuery(request).task());
+        var status = awaitTask(taskId).response();
+        invalidateAll();
+
+        return status == null ? 0 : status.updated();
+    }
+
+    public void deleteById(String id) {
+        deleteById(id, null);
+    }
+
+    public void deleteById(String id, Refresh refresh) {
+        deleteById(id, null, refresh);
+    }
+
+    public void deleteById(String id, DocumentVersion expectedVersion, Refresh refresh) {
+        var builder = new DeleteRequest.Builder()
+                .index(indexName)
+                .id(id)
+                .refresh(refresh);
+        if (expectedVersion != null) {
+            builder
+                    .ifSeqNo(expectedVersion.getSeqNo())
+                    .ifPrimaryTerm(expectedVersion.getPrimaryTerm());
+        }
+        var request = builder.build();
+
+        executeVersioned("delete", id, () -> client.delete(request));
+        invalidate(id);
     }
 
     public List<Student> find(SearchInfo info) {
+        if (findCache == null) {
+            return searchOrCoalesce(info);
+        }
+
+        var key = info.toCanonicalJson(client._jsonpMapper());
+        return findCache.get(key, k -> searchOrCoalesce(info));
+    }
+
+    /**
+     * 以一次 msearch 執行多個查詢，結果依 infos 的順序排列。不經過 find 的結果快取。
+     * 任一查詢失敗時拋出該查詢的 ElasticsearchException。
+     */
+    public List<List<Student>> findAll(List<SearchInfo> infos) {
+        if (infos.isEmpty()) {
+            return List.of();
+        }
+
+        return msearch(infos).stream()
+                .map(SearchOutcome::get)
+                .collect(Collectors.toUnmodifiableList());
+    }
+
+    /**
+     * 與 find 相同的查詢，但一邊解析回應一邊將文件交給 consumer，不建立 SearchResponse 與結果 List。
+     * 低階 client 會先將整個回應讀入記憶體，因此 from + size 超過一頁時改以 point-in-time 搭配
+     * search_after 分頁取得，記憶體用量以一頁為上限。不經過 find 的結果快取。回傳文件數量。
+     */
+    public long findEach(SearchInfo info, Consumer<Student> consumer) {
+        if (restClient == null) {
+            throw new IllegalStateException("RestClient is required for findEach.");
+        }
+
+        var from = info.getFrom() == null ? 0 : info.getFrom();
+        var size = info.getSize() == null ? DEFAULT_SEARCH_SIZE : info.getSize();
+        if (from + size <= DEFAULT_PAGE_SIZE) {
+            var request = new Request("POST", "/" + indexName + "/_search");
+            // 只取回需要的欄位，不必解析 _shards、_id、_score 等內容
+            request.addParameter("filter_path", "took,hits.hits._source");
+            request.setJsonEntity(info.toCanonicalJson(client._jsonpMapper()));
+
+            var count = performStreamedSearch(request, consumer).count;
+            metrics.recordSearchHits(count);
+            return count;
+        }
+
+        return findEachByPages(info, from, size, consumer);
+    }
+
+    /**
+     * 將 SearchInfo 序列化後存為 mustache search template，之後以 findByTemplate 只傳送參數執行。
+     * 相同 id 重複註冊會覆蓋原本的內容。
+     */
+    public void registerSearchTemplate(String templateId, SearchInfo shape) {
+        var source = shape.toCanonicalJson(client._jsonpMapper());
+        var request = new PutScriptRequest.Builder()
+                .id(templateId)
+                .script(b -> b.lang(MUSTACHE).source(source))
+                .build();
+
+        execute("put_script", () -> client.putScript(request));
+    }
+
+    public List<Student> findByTemplate(String templateId, Map<String, Object> params) {
+        var jsonParams = params.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> JsonData.of(e.getValue())));
+        var request = new SearchTemplateRequest.Builder()
+                .index(indexName)
+                .id(templateId)
+                .params(jsonParams)
+                .build();
+
+        return execute("search_template", () -> {
+            var response = client.searchTemplate(request, Student.class);
+            var hits = response.hits().hits();
+            metrics.recordTook("search_template", response.took());
+            metrics.recordSearchHits(hits.size());
+
+            return hits.stream()
+                    .map(Hit::source)
+                    .collect(Collectors.toUnmodifiableList());
+        });
+    }
+
+    /**
+     * 與 find 相同，但每筆結果附帶版本 (seq_no_primary_term)，不經過 find 的結果快取。
+     */
+    public List<VersionedDocument<Student>> findVersioned(SearchInfo info) {
         var request = new SearchRequest.Builder()
                 .index(indexName)
                 .query(info.toQuery())
                 .sort(info.getSortOptions())
                 .from(info.getFrom())
                 .size(info.getSize())
+                .source(info.toSourceConfig())
+                .seqNoPrimaryTerm(true)
                 .build();
 
-        return execute(() -> {
+        return execute("search", () -> {
             var searchResponse = client.search(request, Student.class);
+            recordSearch(searchResponse);
             return searchResponse
                     .hits()
                     .hits()
                     .stream()
-                    .map(Hit::source)
+                    .map(hit -> new VersionedDocument<>(hit.source(), new DocumentVersion(hit.seqNo(), hit.primaryTerm())))
                     .collect(Collectors.toList());
         });
     }
 
+    /**
+     * 以 projection 類別接收查詢結果。SearchInfo 未指定 includes 時，只取回 projection 宣告的欄位。
+     * 投影結果不經過 find 的結果快取。
+     */
+    @SuppressWarnings("unchecked")
+    public <T> List<T> find(SearchInfo info, Class<T> projection) {
+        if (projection == Student.class) {
+            return (List<T>) find(info);
+        }
+
+        return search(info, projection);
+    }
+
+    /**
+     * 只執行 SearchInfo 的聚合，以 size=0 查詢而不取回任何文件。
+     */
+    public AggregationResult aggregate(SearchInfo info) {
+        var request = new SearchRequest.Builder()
+                .index(indexName)
+                .query(info.toQuery())
+                .aggregations(info.getAggregations())
+                .size(0)
+                .build();
+
+        return execute("aggregate", () -> {
+            var searchResponse = client.search(request, Void.class);
+            metrics.recordTook("aggregate", searchResponse.took());
+            return AggregationResult.of(searchResponse);
+        });
+    }
+
+    /**
+     * 以 point-in-time 搭配 search_after 分頁，每頁成本不隨深度增加。
+     * 第一頁的 cursor 為 null，取得最後一頁後會自動關閉 point-in-time。
+     */
+    public CursorPage<Student> findPage(SearchInfo info) {
+        return findPage(info, info.getCursor());
+    }
+
+    /**
+     * 逐頁向 ES 取得資料的 lazy stream，使用完畢須關閉以釋放 point-in-time。
+     */
+    public Stream<Student> stream(SearchInfo info) {
+        var iterator = new CursorIterator(info);
+        var spliterator = Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL);
+
+        return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+    }
+
+    /**
+     * 將查詢切成多個 point-in-time slice，以有限的執行緒並行讀取，每筆文件交給 sink。
+     * sink 可能由多個執行緒同時呼叫。回傳匯出的文件數量。slices 需至少為 1。
+     */
+    public long export(SearchInfo info, int slices, Consumer<Student> sink) {
+        if (slices < 1) {
+            throw new IllegalArgumentException("slices must be at least 1, but was " + slices + ".");
+        }
+
+        var pitId = openPointInTime();
+        var exported = new LongAdder();
+
+        // 建立執行緒池失敗時也要關閉 point-in-time
+        try {
+            var executor = Executors.newFixedThreadPool(Math.min(slices, MAX_EXPORT_PARALLELISM), threadFactory);
+            try {
+                var futures = IntStream.range(0, slices)
+                        .mapToObj(sliceId -> {
+                            var slice = slices > 1
+                                    ? SlicedScroll.of(b -> b.id(sliceId).max(slices))
+                                    : null;
+                            return executor.submit(() -> exportSlice(info, pitId, slice, sink, exported));
+                        })
+                        .collect(Collectors.toList());
+
+                for (var future : futures) {
+                    awaitExport(future);
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        } finally {
+            closePointInTime(pitId);
+        }
+
+        return exported.sum();
+    }
+
+    /**
+     * 以 NDJSON 格式將查詢結果寫入 OutputStream，各 slice 平行序列化後再依序寫出。
+     */
+    public long exportNdjson(SearchInfo info, int slices, OutputStream out) {
+        var mapper = client._jsonpMapper();
+        var writeLock = new ReentrantLock();
+
+        return export(info, slices, doc -> {
+            var buffer = new ByteArrayOutputStream();
+            var generator = mapper.jsonProvider().createGenerator(buffer);
+            mapper.serialize(doc, generator);
+            generator.close();
+            buffer.write('\n');
+
+            writeLock.lock();
+            try {
+                execute(() -> {
+                    buffer.writeTo(out);
+                    return null;
+                });
+            } finally {
+                writeLock.unlock();
+            }
+        });
+    }
+
+    private CursorPage<Student> findPage(SearchInfo info, String cursorToken) {
+        var cursor = cursorToken == null
+                ? new SearchCursor(openPointInTime(), List.of())
+                : SearchCursor.decode(cursorToken);
+        var size = getPageSize(info);
+
+        var searchResponse = searchAfter(info, cursor, size, null);
+        var hits = searchResponse.hits().hits();
+        var docs = hits.stream()
+                .map(Hit::source)
+                .collect(Collectors.toList());
+        var pitId = searchResponse.pitId() == null ? cursor.getPitId() : searchResponse.pitId();
+
+        if (hits.isEmpty() || hits.size() < size) {
+            closePointInTime(pitId);
+            return new CursorPage<>(docs, null);
+        }
+
+        var lastSort = hits.get(hits.size() - 1).sort();
+        return new CursorPage<>(docs, new SearchCursor(pitId, lastSort).encode());
+    }
+
+    private void exportSlice(
+            SearchInfo info, String pitId, SlicedScroll slice, Consumer<Student> sink, LongAdder exported) {
+
+        var cursor = new SearchCursor(pitId, List.of());
+        var size = getPageSize(info);
+
+        while (true) {
+            var searchResponse = searchAfter(info, cursor, size, slice);
+            var hits = searchResponse.hits().hits();
+            hits.forEach(hit -> sink.accept(hit.source()));
+            exported.add(hits.size());
+
+            if (hits.isEmpty() || hits.size() < size) {
+                return;
+            }
+
+            var nextPitId = searchResponse.pitId() == null ? cursor.getPitId() : searchResponse.pitId();
+            cursor = new SearchCursor(nextPitId, hits.get(hits.size() - 1).sort());
+        }
+    }
+
+    private SearchResponse<Student> searchAfter(SearchInfo info, SearchCursor cursor, int size, SlicedScroll slice) {
+        var request = toSearchAfterRequest(info, cursor, size, slice);
+
+        return execute("search", () -> {
+            var searchResponse = client.search(request, Student.class);
+            recordSearch(searchResponse);
+            return searchResponse;
+        });
+    }
+
+    private SearchRequest toSearchAfterRequest(SearchInfo info, SearchCursor cursor, int size, SlicedScroll slice) {
+        // 以 _shard_doc 作為 tiebreaker，確保排序值相同的文件也有唯一順序
+        var sortOptions = new ArrayList<>(info.getSortOptions());
+        sortOptions.add(SearchUtils.createSortOption("_shard_doc", SortOrder.Asc));
+
+        var builder = new SearchRequest.Builder()
+                .pit(b -> b.id(cursor.getPitId()).keepAlive(t -> t.time(PIT_KEEP_ALIVE)))
+                .query(info.toQuery())
+                .sort(sortOptions)
+                .size(size)
+                .slice(slice)
+                .source(info.toSourceConfig())
+                .trackTotalHits(b -> b.enabled(false));
+        if (!cursor.getSearchAfter().isEmpty()) {
+            builder.searchAfter(cursor.getSearchAfter());
+        }
+
+        return builder.build();
+    }
+
+    private int getPageSize(SearchInfo info) {
+        return info.getSize() == null ? DEFAULT_PAGE_SIZE : info.getSize();
+    }
+
+    @SuppressWarnings({"squid:S112"})
+    private void awaitExport(Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private String openPointInTime() {
+        var request = new OpenPointInTimeRequest.Builder()
+                .index(indexName)
+                .keepAlive(b -> b.time(PIT_KEEP_ALIVE))
+                .build();
+
+        return execute("open_pit", () -> client.openPointInTime(request).id());
+    }
+
+    private void closePointInTime(String pitId) {
+        var request = ClosePointInTimeRequest.of(b -> b.id(pitId));
+        execute("close_pit", () -> client.closePointInTime(request));
+    }
+
+    private void createIndex(String physicalIndex, boolean withAlias) {
+        var builder = new CreateIndexRequest.Builder()
+                .index(physicalIndex)
+                .settings(getIndexSettings())
+                .mappings(getTypeMapping());
+        if (withAlias) {
+            builder.aliases(indexName, b -> b.isWriteIndex(true));
+        }
+        var request = builder.build();
+
+        execute("create_index", () -> client.indices().create(request));
+        invalidateAll();
+    }
+
+    private Result update(String id, UpdateRequest<Student, ?> request) {
+        try {
+            var result = executeVersioned("update", id, () -> client.update(request, Student.class).result());
+            invalidate(id);
+            return result;
+        } catch (ElasticsearchException e) {
+            if (e.status() == 404) {
+                return Result.NotFound;
+            }
+            throw e;
+        }
+    }
+
+    // 將 ES 回傳的版本衝突 (409) 轉為 VersionConflictException
+    // 衝突代表快取中的版本可能已過期（如其他執行個體寫入），因此一併使其失效，讓呼叫端重新讀取時取得最新版本
+    private <V> V executeVersioned(String operation, String id, IOSupplier<V> supplier) {
+        try {
+            return execute(operation, supplier);
+        } catch (RuntimeException e) {
+            if (isVersionConflict(e)) {
+                invalidate(id);
+                throw new VersionConflictException(id, e);
+            }
+            throw e;
+        }
+    }
+
+    // transport 只將 400、401、403、404、405 解析為 ElasticsearchException，409 會由 RestClient 拋出 ResponseException
+    private static boolean isVersionConflict(RuntimeException e) {
+        if (e instanceof ElasticsearchException) {
+            return ((ElasticsearchException) e).status() == 409;
+        }
+        return e.getCause() instanceof ResponseException
+                && ((ResponseException) e.getCause()).getResponse().getStatusLine().getStatusCode() == 409;
+    }
+
+    // 別名可能指向多個索引，依實際索引名稱分別記錄；未明確設定的 refresh_interval 取自預設值
+    private Map<String, IndexSettings> getRefreshAndReplicaSettings() {
+        var response = execute("get_settings", () -> client.indices().getSettings(b -> b
+                .index(indexName)
+                .name("index.refresh_interval", "index.number_of_replicas")
+                .includeDefaults(true)));
+
+        var result = new LinkedHashMap<String, IndexSettings>();
+        response.result().forEach((index, state) -> {
+            var refreshInterval = findSetting(state, IndexSettings::refreshInterval);
+            var numberOfReplicas = findSetting(state, IndexSettings::numberOfReplicas);
+            result.put(index, IndexSettings.of(b -> b
+                    .refreshInterval(refreshInterval)
+                    .numberOfReplicas(numberOfReplicas)));
+        });
+        return result;
+    }
+
+    // 依序查找明確設定的值與預設值，兩者在回應中都位於 "index" 之下
+    private static <T> T findSetting(IndexState state, Function<IndexSettings, T> getter) {
+        return Stream.of(state.settings(), state.defaults())
+                .filter(Objects::nonNull)
+                .flatMap(settings -> Stream.of(settings.index(), settings))
+                .filter(Objects::nonNull)
+                .map(getter)
+                .filter(Objects::nonNull)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private void updateIndexSettings(String index, IndexSettings settings) {
+        var request = new PutIndicesSettingsRequest.Builder()
+                .index(index)
+                .settings(settings)
+                .build();
+
+        execute("put_settings", () -> client.indices().putSettings(request));
+    }
+
+    private void finishBulkLoad(Map<String, IndexSettings> previousSettings, boolean forceMerge) {
+        previousSettings.forEach(this::updateIndexSettings);
+        refresh();
+
+        if (forceMerge) {
+            execute("force_merge", () -> client.indices().forcemerge(b -> b.index(indexName).maxNumSegments(1L)));
+        }
+    }
+
+    private void deleteIndices(List<String> indices) {
+        var request = DeleteIndexRequest.of(b -> b.index(indices));
+        execute("delete_index", () -> client.indices().delete(request));
+    }
+
+    private boolean existsAlias() {
+        return execute(() -> client.indices().existsAlias(b -> b.name(indexName)).value());
+    }
+
+    private boolean existsIndex(String index) {
+        return execute(() -> client.indices().exists(b -> b.index(index)).value());
+    }
+
+    private List<String> getAliasedIndices() {
+        var response = execute(() -> client.indices().getAlias(b -> b.name(indexName)));
+        return new ArrayList<>(response.result().keySet());
+    }
+
+    /**
+     * 將來源索引的資料複製到新版索引後切換別名。
+     * 先在線上以 external 版本號 reindex，再暫停來源索引的寫入，補上差異後切換別名，
+     * 補差異期間對別名的寫入會因 write block 而失敗，但不會被 reindex 覆寫。
+     * 不支援同步複製期間的刪除：第一次 reindex 之後才從來源刪除的文件會留在新版索引中。
+     * 新版索引只由建立它的執行個體遷移；已存在時代表另一個執行個體正在遷移，或先前的遷移中斷，
+     * 此時直接失敗而不刪除它，需確認沒有遷移在進行後手動刪除。
+     */
+    private void migrate(List<String> sourceIndices, String targetIndex, boolean legacy) {
+        createTargetIndex(targetIndex);
+
+        var writeBlocked = false;
+        try {
+            reindex(sourceIndices, targetIndex);
+
+            setWriteBlock(sourceIndices, true);
+            writeBlocked = true;
+            reindex(sourceIndices, targetIndex);
+            // 舊版索引與別名同名，須在同一個請求中刪除
+            swapAlias(sourceIndices, targetIndex, legacy);
+        } catch (RuntimeException e) {
+            if (writeBlocked) {
+                setWriteBlock(sourceIndices, false);
+            }
+            deleteIndices(List.of(targetIndex));
+            throw e;
+        }
+
+        if (!legacy) {
+            deleteIndices(sourceIndices);
+        }
+        invalidateAll();
+    }
+
+    // 以建立索引作為遷移的鎖，同名索引已存在時不刪除而是失敗
+    private void createTargetIndex(String targetIndex) {
+        try {
+            createIndex(targetIndex, false);
+        } catch (ElasticsearchException e) {
+            if ("resource_already_exists_exception".equals(e.error().type())) {
+                throw new IllegalStateException("Index " + targetIndex + " already exists. Another instance may be"
+                        + " migrating to it, or an earlier migration was interrupted.", e);
+            }
+            throw e;
+        }
+    }
+
+    private void setWriteBlock(List<String> indices, boolean blocked) {
+        var request = new PutIndicesSettingsRequest.Builder()
+                .index(indices)
+                .settings(b -> b.blocks(bl -> bl.write(blocked)))
+                .build();
+
+        execute("put_settings", () -> client.indices().putSettings(request));
+    }
+
+    private void reindex(List<String> sourceIndices, String targetIndex) {
+        var request = new ReindexRequest.Builder()
+                .source(b -> b.index(sourceIndices))
+                .dest(b -> b.index(targetIndex).versionType(VersionType.External))
+                .conflicts(Conflicts.Proceed)
+                .slices(b -> b.computed(SlicesCalculation.Auto))
+                .waitForCompletion(false)
+                .build();
+
+        var taskId = execute("reindex", () -> client.reindex(request).task());
+        awaitTask(taskId);
+        execute("refresh", () -> client.indices().refresh(b -> b.index(targetIndex)));
+    }
+
+    // reindex 與 update by query 可能超過 socket timeout，因此以背景 task 執行並輪詢其狀態
+    @SuppressWarnings({"squid:S112", "squid:S2925"})
+    private GetTasksResponse awaitTask(String taskId) {
+        while (true) {
+            var response = execute(() -> client.tasks().get(b -> b.taskId(taskId)));
+            if (response.completed()) {
+                if (response.error() != null) {
+                    throw new RuntimeException("Task " + taskId + " failed: " + response.error().reason());
+                }
+                return response;
+            }
+
+            try {
+                Thread.sleep(TASK_POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    // 在同一個請求中移除舊索引的別名並加到新索引，讀寫不會落空
+    private void swapAlias(List<String> sourceIndices, String targetIndex, boolean removeSourceIndices) {
+        var request = new UpdateAliasesRequest.Builder();
+        sourceIndices.forEach(index -> request.actions(b -> removeSourceIndices
+                ? b.removeIndex(r -> r.index(index))
+                : b.remove(r -> r.index(index).alias(indexName))));
+        request.actions(b -> b.add(a -> a.index(targetIndex).alias(indexName).isWriteIndex(true)));
+
+        execute("update_aliases", () -> client.indices().updateAliases(request.build()));
+    }
+
+    // 以 mapping 與無法線上變更的設定計算版本，內容不同即代表需要 reindex
+    private String getVersionedIndexName() {
+        var writer = new StringWriter();
+        var mapper = client._jsonpMapper();
+        var generator = mapper.jsonProvider().createGenerator(writer);
+        getTypeMapping().serialize(generator, mapper);
+        generator.close();
+
+        writer.write(String.valueOf(indexSettings.getNumberOfShards()));
+        writer.write(String.valueOf(indexSettings.getSortFields()));
+        writer.write(String.valueOf(indexSettings.getSortOrders()));
+
+        var crc = new CRC32();
+        crc.update(writer.toString().getBytes(StandardCharsets.UTF_8));
+        return indexName + "_" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * 明確定義所有欄位，不做全文搜尋的字串只建立 keyword，不排序與聚合的欄位關閉 doc_values。
+     * 未定義的欄位仍保留在 _source 中，但不會被索引。
+     */
+    private TypeMapping getTypeMapping() {
+        return TypeMapping.of(b -> b
+                .dynamic(DynamicMapping.False)
+                .properties(getPropertyMappings()));
+    }
+
     private Map<String, Property> getPropertyMappings() {
-        var englishIssuedDateProperty = DateProperty.of(b -> b)._toProperty();
-        return Map.of("englishIssuedDate", englishIssuedDateProperty);
+        var keywordProperty = KeywordProperty.of(b -> b)._toProperty();
+        var integerProperty = IntegerNumberProperty.of(b -> b)._toProperty();
+
+        var courseProperty = NestedProperty.of(b -> b
+                .properties("name", createTextWithKeywordProperty(false))
+                .properties("point", integerProperty)
+        )._toProperty();
+        var jobProperty = ObjectProperty.of(b -> b
+                .properties("name", keywordProperty)
+                .properties("primary", BooleanProperty.of(p -> p)._toProperty())
+        )._toProperty();
+
+        var properties = new HashMap<String, Property>();
+        properties.put("id", keywordProperty);
+        properties.put("name", createTextWithKeywordProperty(false));
+        properties.put("departments", createTextWithKeywordProperty(true)); // 常用於 terms 聚合
+        properties.put("courses", courseProperty); // 以 nested 保留每門課程名稱與學分的對應
+        properties.put("grade", integerProperty);
+        properties.put("conductScore", integerProperty);
+        properties.put("job", jobProperty);
+        properties.put("introduction", TextProperty.of(b -> b)._toProperty());
+        properties.put("englishIssuedDate", DateProperty.of(b -> b)._toProperty());
+        properties.put("bloodType", KeywordProperty.of(b -> b.eagerGlobalOrdinals(true))._toProperty());
+        properties.put("phoneNumbers", KeywordProperty.of(b -> b.docValues(false))._toProperty()); // 只用於精確查詢
+
+        return properties;
+    }
+
+    // text 供全文搜尋，子欄位 keyword 供精確查詢、排序與聚合
+    private Property createTextWithKeywordProperty(boolean eagerGlobalOrdinals) {
+        var keywordProperty = KeywordProperty.of(b -> b
+                .ignoreAbove(256)
+                .eagerGlobalOrdinals(eagerGlobalOrdinals)
+        )._toProperty();
+
+        return TextProperty.of(b -> b.fields("keyword", keywordProperty))._toProperty();
+    }
+
+    private IndexSettings getIndexSettings() {
+        var builder = new IndexSettings.Builder()
+                .numberOfShards(String.valueOf(indexSettings.getNumberOfShards()))
+                .numberOfReplicas(String.valueOf(indexSettings.getNumberOfReplicas()))
+                .refreshInterval(b -> b.time(indexSettings.getRefreshInterval()));
+
+        // index sort 讓以相同欄位排序的查詢可提前結束，代價是寫入較慢
+        if (!indexSettings.getSortFields().isEmpty()) {
+            var orders = indexSettings.getSortOrders().stream()
+                    .map(order -> SegmentSortOrder._DESERIALIZER.parse(order))
+                    .collect(Collectors.toList());
+            builder.sort(b -> b
+                    .field(indexSettings.getSortFields())
+                    .order(orders));
+        }
+
+        return builder.build();
+    }
+
+    private class CursorIterator implements Iterator<Student> {
+        private final SearchInfo info;
+        private Iterator<Student> currentPage = Collections.emptyIterator();
+        private String cursor;
+        private boolean exhausted;
+
+        private CursorIterator(SearchInfo info) {
+            this.info = info;
+            this.cursor = info.getCursor();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!currentPage.hasNext() && !exhausted) {
+                var page = findPage(info, cursor);
+                currentPage = page.getContent().iterator();
+                cursor = page.getNextCursor();
+                exhausted = cursor == null;
+            }
+
+            return currentPage.hasNext();
+        }
+
+        @Override
+        public Student next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            return currentPage.next();
+        }
+
+        // 提前結束讀取時，關閉尚未用完的 point-in-time
+        private void close() {
+            if (!exhausted && cursor != null) {
+                exhausted = true;
+                closePointInTime(SearchCursor.decode(cursor).getPitId());
+            }
+        }
+    }
+
+    private <T> List<T> search(SearchInfo info, Class<T> documentClass) {
+        var request = new SearchRequest.Builder()
+                .index(indexName)
+                .query(info.toQuery())
+                .sort(info.getSortOptions())
+                .from(info.getFrom())
+                .size(info.getSize())
+                .source(documentClass == Student.class ? info.toSourceConfig() : info.toSourceConfig(documentClass))
+                .build();
+
+        return execute("search", () -> {
+            var searchResponse = client.search(request, documentClass);
+            recordSearch(searchResponse);
+            var docs = searchResponse
+                    .hits()
+                    .hits()
+                    .stream()
+                    .map(Hit::source)
+                    .collect(Collectors.toList());
+            return Collections.unmodifiableList(docs);
+        });
+    }
+
+    // 跳過前 from 筆後，逐頁交給 consumer，直到取得 size 筆或沒有更多結果
+    private long findEachByPages(SearchInfo info, int from, int size, Consumer<Student> consumer) {
+        var mapper = client._jsonpMapper();
+        var end = from + (long) size;
+        var seen = new AtomicLong();
+        Consumer<Student> skipping = doc -> {
+            if (seen.getAndIncrement() >= from) {
+                consumer.accept(doc);
+            }
+        };
+
+        var fetched = 0L;
+        var cursor = new SearchCursor(openPointInTime(), List.of());
+        try {
+            while (fetched < end) {
+                var pageSize = (int) Math.min(end - fetched, DEFAULT_PAGE_SIZE);
+                var body = new StringWriter();
+                var generator = mapper.jsonProvider().createGenerator(body);
+                toSearchAfterRequest(info, cursor, pageSize, null).serialize(generator, mapper);
+                generator.close();
+
+                // 使用 point-in-time 時不可指定索引
+                var request = new Request("POST", "/_search");
+                request.addParameter("filter_path", "took,pit_id,hits.hits._source,hits.hits.sort");
+                request.setJsonEntity(body.toString());
+
+                var page = performStreamedSearch(request, skipping);
+                fetched += page.count;
+                var pitId = page.pitId == null ? cursor.getPitId() : page.pitId;
+                cursor = new SearchCursor(pitId, page.lastSort);
+                if (page.count < pageSize) {
+                    break;
+                }
+            }
+        } finally {
+            closePointInTime(cursor.getPitId());
+        }
+
+        var count = Math.max(0, fetched - from);
+        metrics.recordSearchHits(count);
+        return count;
+    }
+
+    private StreamedHits performStreamedSearch(Request request, Consumer<Student> consumer) {
+        return execute("search_stream", () -> {
+            var response = restClient.performRequest(request);
+            try (var content = response.getEntity().getContent()) {
+                return parseHits(content, consumer);
+            }
+        });
+    }
+
+    // 回應經 filter_path 過濾後的格式為 {"took":1,"hits":{"hits":[{"_source":{...}}, ...]}}，沒有結果時不含 hits
+    // 未經過濾的回應也能解析，_source、sort 與 pit_id 以外的欄位會被略過
+    private StreamedHits parseHits(InputStream content, Consumer<Student> consumer) {
+        var mapper = client._jsonpMapper();
+        var result = new StreamedHits();
+
+        try (var parser = mapper.jsonProvider().createParser(content)) {
+            JsonpUtils.expectNextEvent(parser, JsonParser.Event.START_OBJECT);
+            while (parser.next() == JsonParser.Event.KEY_NAME) {
+                var key = parser.getString();
+                if ("took".equals(key)) {
+                    JsonpUtils.expectNextEvent(parser, JsonParser.Event.VALUE_NUMBER);
+                    metrics.recordTook("search_stream", parser.getLong());
+                } else if ("pit_id".equals(key)) {
+                    JsonpUtils.expectNextEvent(parser, JsonParser.Event.VALUE_STRING);
+                    result.pitId = parser.getString();
+                } else if ("hits".equals(key)) {
+                    JsonpUtils.expectNextEvent(parser, JsonParser.Event.START_OBJECT);
+                    while (parser.next() == JsonParser.Event.KEY_NAME) {
+                        if ("hits".equals(parser.getString())) {
+                            parseHitArray(parser, consumer, result);
+                        } else {
+                            JsonpUtils.skipValue(parser);
+                        }
+                    }
+                } else {
+                    JsonpUtils.skipValue(parser);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    private void parseHitArray(JsonParser parser, Consumer<Student> consumer, StreamedHits result) {
+        var mapper = client._jsonpMapper();
+
+        JsonpUtils.expectNextEvent(parser, JsonParser.Event.START_ARRAY);
+        while (parser.next() == JsonParser.Event.START_OBJECT) {
+            while (parser.next() == JsonParser.Event.KEY_NAME) {
+                var key = parser.getString();
+                if ("_source".equals(key)) {
+                    consumer.accept(mapper.deserialize(parser, Student.class));
+                    result.count++;
+                } else if ("sort".equals(key)) {
+                    result.lastSort = SORT_VALUES_DESERIALIZER.deserialize(parser, mapper);
+                } else {
+                    JsonpUtils.skipValue(parser);
+                }
+            }
+        }
+    }
+
+    private List<Student> searchOrCoalesce(SearchInfo info) {
+        if (findCoalescer == null) {
+            return search(info, Student.class);
+        }
+
+        var key = new SearchKey(info, info.toCanonicalJson(client._jsonpMapper()));
+        return joinCoalesced(findCoalescer.submit(key)).get();
+    }
+
+    private Map<SearchKey, SearchOutcome> msearchByKey(Set<SearchKey> keys) {
+        var keyList = new ArrayList<>(keys);
+        var infos = keyList.stream()
+                .map(key -> key.info)
+                .collect(Collectors.toList());
+        var outcomes = msearch(infos);
+
+        var result = new HashMap<SearchKey, SearchOutcome>();
+        for (var i = 0; i < keyList.size(); i++) {
+            result.put(keyList.get(i), outcomes.get(i));
+        }
+        return result;
+    }
+
+    // 各查詢的結果或錯誤，單一查詢失敗不影響同一批次的其他查詢
+    private List<SearchOutcome> msearch(List<SearchInfo> infos) {
+        var searches = infos.stream()
+                .map(info -> RequestItem.of(b -> b
+                        .header(h -> h)
+                        .body(body -> body
+                                .query(info.toQuery())
+                                .sort(info.getSortOptions())
+                                .from(info.getFrom())
+                                .size(info.getSize())
+                                .source(info.toSourceConfig()))))
+                .collect(Collectors.toList());
+        var request = new MsearchRequest.Builder()
+                .index(indexName)
+                .searches(searches)
+                .build();
+
+        return execute("msearch", () -> {
+            var response = client.msearch(request, Student.class);
+            metrics.recordTook("msearch", response.took());
+
+            return response.responses().stream()
+                    .map(item -> {
+                        if (!item.isResult()) {
+                            return SearchOutcome.failure(new ElasticsearchException("msearch", item.failure()));
+                        }
+                        var hits = item.result().hits().hits();
+                        metrics.recordSearchHits(hits.size());
+                        var docs = hits.stream()
+                                .map(Hit::source)
+                                .collect(Collectors.toUnmodifiableList());
+                        return SearchOutcome.success(docs);
+                    })
+                    .collect(Collectors.toList());
+        });
+    }
+
+    private Optional<VersionedDocument<Student>> getById(String id) {
+        if (findByIdCoalescer != null) {
+            return joinCoalesced(findByIdCoalescer.submit(id));
+        }
+
+        var request = new GetRequest.Builder()
+                .index(indexName)
+                .id(id)
+                .build();
+
+        var getResponse = execute("get", () -> client.get(request, Student.class));
+        return VersionedDocument.of(getResponse);
+    }
+
+    private <V> V joinCoalesced(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Map<String, Optional<VersionedDocument<Student>>> mgetById(Set<String> ids) {
+        var request = new MgetRequest.Builder()
+                .index(indexName)
+                .ids(new ArrayList<>(ids))
+                .build();
+
+        var mgetResponse = execute("mget", () -> client.mget(request, Student.class));
+        var result = new HashMap<String, Optional<VersionedDocument<Student>>>();
+        ids.forEach(id -> result.put(id, Optional.empty()));
+        mgetResponse.docs().stream()
+                .filter(MultiGetResponseItem::isResult)
+                .map(MultiGetResponseItem::result)
+                .filter(GetResult::found)
+                .forEach(doc -> result.put(doc.id(), VersionedDocument.of(doc)));
+
+        return result;
+    }
+
+    private void invalidate(String id) {
+        if (findByIdCache != null && id != null) {
+            findByIdCache.invalidate(id);
+        }
+        if (findCache != null) {
+            findCache.invalidateAll();
+        }
+    }
+
+    private void invalidateAll() {
+        if (findByIdCache != null) {
+            findByIdCache.invalidateAll();
+        }
+        if (findCache != null) {
+            findCache.invalidateAll();
+        }
+    }
+
+    private void recordSearch(SearchResponse<?> searchResponse) {
+        metrics.recordTook("search", searchResponse.took());
+        metrics.recordSearchHits(searchResponse.hits().hits().size());
+    }
+
+    // 記錄操作的延遲與是否失敗
+    private <V> V execute(String operation, IOSupplier<V> supplier) {
+        var start = System.nanoTime();
+        var succeeded = false;
+        try {
+            var result = execute(supplier);
+            succeeded = true;
+            return result;
+        } finally {
+            metrics.recordLatency(operation, System.nanoTime() - start, succeeded);
+        }
     }
 
     @SuppressWarnings({"squid:S112"})
@@ -158,4 +1422,56 @@ public class StudentEsRepository {
         }
     }
 
+    // findEach 解析一次回應的結果
+    private static final class StreamedHits {
+        private long count;
+        private String pitId;                         // ES 可能在回應中更新 point-in-time 的 id
+        private List<String> lastSort = List.of(); // 最後一筆的排序值，作為下一頁的 search_after
+    }
+
+    // 以查詢內容的 JSON 判斷是否為相同查詢，合併時內容相同的 find 只送出一次
+    private static final class SearchKey {
+        private final SearchInfo info;
+        private final String json;
+
+        private SearchKey(SearchInfo info, String json) {
+            this.info = info;
+            this.json = json;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof SearchKey && json.equals(((SearchKey) o).json);
+        }
+
+        @Override
+        public int hashCode() {
+            return json.hashCode();
+        }
+    }
+
+    private static final class SearchOutcome {
+        private final List<Student> docs;
+        private final RuntimeException error;
+
+        private SearchOutcome(List<Student> docs, RuntimeException error) {
+            this.docs = docs;
+            this.error = error;
+        }
+
+        private static SearchOutcome success(List<Student> docs) {
+            return new SearchOutcome(docs, null);
+        }
+
+        private static SearchOutcome failure(RuntimeException error) {
+            return new SearchOutcome(null, error);
+        }
+
+        private List<Student> get() {
+            if (error != null) {
+                throw error;
+            }
+            return docs;
+        }
+    }
 }
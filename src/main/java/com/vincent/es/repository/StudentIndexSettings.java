@@ -0,0 +1,51 @@
+package com.vincent.es.repository;
+
+import java.util.List;
+
+public class StudentIndexSettings {
+    private int numberOfShards = 1;                  // 主分片數量，建立索引後無法變更
+    private int numberOfReplicas = 1;                // 副本數量
+    private String refreshInterval = "1s";           // 新資料可被搜尋到的間隔，-1 表示不自動 refresh
+    private List<String> sortFields = List.of();     // index sort 的欄位，空表示不排序
+    private List<String> sortOrders = List.of();     // 各欄位的排序方向 (asc, desc)，與 sortFields 一一對應
+
+    public int getNumberOfShards() {
+        return numberOfShards;
+    }
+
+    public void setNumberOfShards(int numberOfShards) {
+        this.numberOfShards = numberOfShards;
+    }
+
+    public int getNumberOfReplicas() {
+        return numberOfReplicas;
+    }
+
+    public void setNumberOfReplicas(int numberOfReplicas) {
+        this.numberOfReplicas = numberOfReplicas;
+    }
+
+    public String getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(String refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public List<String> getSortFields() {
+        return sortFields;
+    }
+
+    public void setSortFields(List<String> sortFields) {
+        this.sortFields = sortFields;
+    }
+
+    public List<String> getSortOrders() {
+        return sortOrders;
+    }
+
+    public void setSortOrders(List<String> sortOrders) {
+        this.sortOrders = sortOrders;
+    }
+}
@@ -0,0 +1,19 @@
+package com.vincent.es.repository;
+
+/**
+ * 寫入時指定的版本與 ES 中的文件不符，代表文件已被其他請求修改。
+ */
+public class VersionConflictException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    private final String id;
+
+    public VersionConflictException(String id, Throwable cause) {
+        super("Document " + id + " has been modified by another request.", cause);
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+}
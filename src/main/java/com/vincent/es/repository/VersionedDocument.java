@@ -0,0 +1,39 @@
+package com.vincent.es.repository;
+
+import co.elastic.clients.elasticsearch.core.get.GetResult;
+
+import java.util.Optional;
+import java.util.function.UnaryOperator;
+
+public class VersionedDocument<T> {
+    private final T document;               // 文件內容
+    private final DocumentVersion version;  // 讀取當下的版本
+
+    public VersionedDocument(T document, DocumentVersion version) {
+        this.document = document;
+        this.version = version;
+    }
+
+    // get 或 mget 的單筆結果，文件不存在時為 empty
+    static <T> Optional<VersionedDocument<T>> of(GetResult<T> result) {
+        if (result.source() == null) {
+            return Optional.empty();
+        }
+
+        var version = new DocumentVersion(result.seqNo(), result.primaryTerm());
+        return Optional.of(new VersionedDocument<>(result.source(), version));
+    }
+
+    // 以 copier 複製文件內容，版本不變
+    VersionedDocument<T> copy(UnaryOperator<T> copier) {
+        return new VersionedDocument<>(copier.apply(document), version);
+    }
+
+    public T getDocument() {
+        return document;
+    }
+
+    public DocumentVersion getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,93 @@
+package com.vincent.es.util;
+
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregate;
+import co.elastic.clients.elasticsearch._types.aggregations.StatsAggregate;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 聚合查詢的結果，依建立聚合時的名稱取出已轉換型態的統計值。
+ * 分桶結果以 LinkedHashMap 保留 ES 回傳的順序。
+ */
+public class AggregationResult {
+    private final long totalHits;                    // 符合查詢條件的文件數量
+    private final Map<String, Aggregate> aggregates; // 聚合名稱與原始結果
+
+    public AggregationResult(long totalHits, Map<String, Aggregate> aggregates) {
+        this.totalHits = totalHits;
+        this.aggregates = aggregates;
+    }
+
+    public static AggregationResult of(SearchResponse<?> searchResponse) {
+        var total = searchResponse.hits().total();
+        return new AggregationResult(total == null ? 0 : total.value(), searchResponse.aggregations());
+    }
+
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    public Map<String, Aggregate> getAggregates() {
+        return aggregates;
+    }
+
+    // terms 聚合，key 為欄位值的字串形式，value 為文件數量
+    public Map<String, Long> getTermCounts(String name) {
+        var aggregate = getAggregate(name);
+        var counts = new LinkedHashMap<String, Long>();
+
+        if (aggregate.isSterms()) {
+            aggregate.sterms().buckets().array()
+                    .forEach(bucket -> counts.put(bucket.key(), bucket.docCount()));
+        } else if (aggregate.isLterms()) {
+            aggregate.lterms().buckets().array()
+                    .forEach(bucket -> counts.put(String.valueOf(bucket.key()), bucket.docCount()));
+        } else if (aggregate.isDterms()) {
+            aggregate.dterms().buckets().array()
+                    .forEach(bucket -> counts.put(String.valueOf(bucket.key()), bucket.docCount()));
+        } else if (!aggregate.isUmterms()) { // 欄位沒有任何值時 ES 回傳 unmapped terms
+            throw new IllegalArgumentException("Aggregation " + name + " is not a terms aggregation.");
+        }
+
+        return counts;
+    }
+
+    // histogram 聚合，key 為區間起點
+    public Map<Double, Long> getHistogramCounts(String name) {
+        var counts = new LinkedHashMap<Double, Long>();
+        getAggregate(name).histogram().buckets().array()
+                .forEach(bucket -> counts.put(bucket.key(), bucket.docCount()));
+
+        return counts;
+    }
+
+    // date_histogram 聚合，key 為依 format 格式化的區間起點
+    public Map<String, Long> getDateHistogramCounts(String name) {
+        var counts = new LinkedHashMap<String, Long>();
+        getAggregate(name).dateHistogram().buckets().array()
+                .forEach(bucket -> counts.put(bucket.keyAsString(), bucket.docCount()));
+
+        return counts;
+    }
+
+    public StatsAggregate getStats(String name) {
+        return getAggregate(name).stats();
+    }
+
+    // nested 聚合，回傳的結果以巢狀文件數量作為 totalHits
+    public AggregationResult getNested(String name) {
+        var nested = getAggregate(name).nested();
+        return new AggregationResult(nested.docCount(), nested.aggregations());
+    }
+
+    private Aggregate getAggregate(String name) {
+        var aggregate = aggregates.get(name);
+        if (aggregate == null) {
+            throw new IllegalArgumentException("Aggregation " + name + " does not exist.");
+        }
+
+        return aggregate;
+    }
+}
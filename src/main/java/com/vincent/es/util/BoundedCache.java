@@ -0,0 +1,245 @@
+package com.vincent.es.util;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 有容量上限與存活時間的 LRU 快取。
+ * 同一個 key 同時發生多次 miss 時只會呼叫一次 loader，其餘呼叫端等待同一個結果。
+ * value 不可為 null，不存在的資料可用 Optional 表示。
+ */
+public class BoundedCache<K, V> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final Map<K, Entry<V>> entries;
+    private final Map<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public BoundedCache(int maxSize, Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > BoundedCache.this.maxSize;
+            }
+        };
+    }
+
+    public V get(K key, Function<K, V> loader) {
+        var cached = getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        var future = new CompletableFuture<V>();
+        var existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            return join(existing);
+        }
+
+        try {
+            var value = loader.apply(key);
+            // 載入期間若被 invalidate，結果可能已過時，只回傳給呼叫端而不放入快取
+            if (loading.remove(key, future)) {
+                put(key, value);
+            }
+            future.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            loading.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 與 get 相同，但由 loader 回傳的 future 非同步載入，不佔用呼叫端的執行緒。
+     * 與 get 共用載入中的狀態，因此同步與非同步的 miss 也只會載入一次。
+     */
+    public CompletableFuture<V> getAsync(K key, Function<K, CompletableFuture<V>> loader) {
+        var cached = getIfPresent(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+
+        var future = new CompletableFuture<V>();
+        var existing = loading.putIfAbsent(key, future);
+        if (existing != null) {
+            return existing.copy();
+        }
+
+        CompletableFuture<V> load;
+        try {
+            load = loader.apply(key);
+        } catch (RuntimeException e) {
+            loading.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+
+        load.whenComplete((value, error) -> {
+            if (error != null) {
+                loading.remove(key, future);
+                future.completeExceptionally(error);
+                return;
+            }
+            // 載入期間若被 invalidate，結果可能已過時，只回傳給呼叫端而不放入快取
+            if (loading.remove(key, future)) {
+                put(key, value);
+            }
+            future.complete(value);
+        });
+        return future.copy();
+    }
+
+    /**
+     * 一次取得多個 key，未命中且沒有在載入中的 key 交給 loader 批次載入，
+     * 與 get 相同，載入期間被 invalidate 的 key 不會放入快取。
+     * loader 須回傳每個 key 的結果，回傳的 Map 依 keys 的順序排列。
+     */
+    public Map<K, V> getAll(Collection<K> keys, Function<Set<K>, Map<K, V>> loader) {
+        var result = new LinkedHashMap<K, V>();
+        var owned = new LinkedHashMap<K, CompletableFuture<V>>();   // 由這次呼叫載入
+        var awaiting = new LinkedHashMap<K, CompletableFuture<V>>(); // 由其他呼叫端載入中
+
+        for (var key : keys) {
+            var cached = getIfPresent(key);
+            if (cached != null) {
+                result.put(key, cached);
+                continue;
+            }
+
+            result.put(key, null);
+            var future = new CompletableFuture<V>();
+            var existing = loading.putIfAbsent(key, future);
+            if (existing == null) {
+                owned.put(key, future);
+            } else {
+                awaiting.put(key, existing);
+            }
+        }
+
+        if (!owned.isEmpty()) {
+            Map<K, V> loaded;
+            try {
+                loaded = loader.apply(owned.keySet());
+            } catch (RuntimeException e) {
+                owned.forEach((key, future) -> {
+                    loading.remove(key, future);
+                    future.completeExceptionally(e);
+                });
+                throw e;
+            }
+
+            owned.forEach((key, future) -> {
+                var value = loaded.get(key);
+                if (loading.remove(key, future)) {
+                    put(key, value);
+                }
+                future.complete(value);
+                result.put(key, value);
+            });
+        }
+
+        awaiting.forEach((key, future) -> result.put(key, join(future)));
+        return result;
+    }
+
+    public V getIfPresent(K key) {
+        lock.lock();
+        try {
+            var entry = entries.get(key);
+            if (entry != null && entry.expireAt - System.nanoTime() > 0) {
+                hits.increment();
+                return entry.value;
+            }
+
+            if (entry != null) {
+                entries.remove(key);
+            }
+            misses.increment();
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        lock.lock();
+        try {
+            entries.put(key, new Entry<>(value, System.nanoTime() + ttlNanos));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        loading.remove(key);
+        lock.lock();
+        try {
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        loading.clear();
+        lock.lock();
+        try {
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expireAt;
+
+        private Entry(V value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.vincent.es.util;
+
+import java.util.List;
+
+public class CursorPage<T> {
+    private final List<T> content;  // 本頁資料
+    private final String nextCursor; // 下一頁的游標，已無資料時為 null
+
+    public CursorPage(List<T> content, String nextCursor) {
+        this.content = content;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
@@ -0,0 +1,46 @@
+package com.vincent.es.util;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+/**
+ * 應用程式共用的 Jackson 設定。Spring MVC、ES transport 與範例資料載入都套用同一份設定，
+ * 並盡量重複使用同一個 ObjectMapper，讓已建立的 (反)序列化器與緩衝區能被沿用。
+ */
+public class JsonMappers {
+    private static final ObjectMapper DEFAULT = builder().build();
+
+    private JsonMappers() {}
+
+    /**
+     * 不在 Spring 容器內使用的共用 ObjectMapper，不可再修改其設定。
+     */
+    public static ObjectMapper getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 與 JacksonConfig 套用至 Spring 的設定相同：
+     * 以 Blackbird 產生的 lambda 存取 getter/setter，取代反射呼叫；
+     * 未知欄位不視為錯誤 (索引的 dynamic 為 false，_source 可能含有未定義的欄位)；
+     * 每次寫出後不 flush (由呼叫端決定何時 flush，串流輸出時可減少系統呼叫)。
+     */
+    public static JsonMapper.Builder builder() {
+        return JsonMapper.builder()
+                .addModule(new BlackbirdModule())
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * 以共用設定為基礎複製一份給 ES transport 使用。
+     * Date 維持以 epoch millis 寫入，與既有文件的格式相同；JacksonJsonpMapper 會再設定略過 null 欄位。
+     */
+    public static ObjectMapper forElasticsearch(ObjectMapper mapper) {
+        return mapper.copy()
+                .enable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+    }
+}
@@ -0,0 +1,106 @@
+package com.vincent.es.util;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 將一小段時間內陸續送來的單筆請求合併成一次批次請求，再把結果分送回各呼叫端。
+ * 批次在時間窗結束或累積到 maxBatchSize 時送出；相同的 key 只會查詢一次。
+ */
+public class RequestCoalescer<K, V> {
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Function<Set<K>, Map<K, V>> batchLoader;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService executor;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Map<K, CompletableFuture<V>> pending = new HashMap<>();
+
+    public RequestCoalescer(
+            Duration window, int maxBatchSize, Function<Set<K>, Map<K, V>> batchLoader, ThreadFactory threadFactory) {
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.batchLoader = batchLoader;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "request-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor = Executors.newCachedThreadPool(threadFactory);
+    }
+
+    // 回傳的 future 在批次完成後得到該 key 的結果，批次結果中沒有該 key 時為 null
+    public CompletableFuture<V> submit(K key) {
+        Map<K, CompletableFuture<V>> fullBatch = null;
+        CompletableFuture<V> future;
+
+        lock.lock();
+        try {
+            future = pending.get(key);
+            if (future != null) {
+                return future;
+            }
+
+            future = new CompletableFuture<>();
+            pending.put(key, future);
+
+            if (pending.size() == 1) {
+                var batch = pending;
+                scheduler.schedule(() -> flush(batch), windowNanos, TimeUnit.NANOSECONDS);
+            }
+            if (pending.size() >= maxBatchSize) {
+                fullBatch = pending;
+                pending = new HashMap<>();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (fullBatch != null) {
+            var batch = fullBatch;
+            executor.execute(() -> load(batch));
+        }
+
+        return future;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        executor.shutdown();
+    }
+
+    // 時間窗結束時，若該批次尚未因數量已滿而送出，則由此送出
+    private void flush(Map<K, CompletableFuture<V>> batch) {
+        lock.lock();
+        try {
+            if (pending != batch) {
+                return;
+            }
+            pending = new HashMap<>();
+        } finally {
+            lock.unlock();
+        }
+
+        executor.execute(() -> load(batch));
+    }
+
+    private void load(Map<K, CompletableFuture<V>> batch) {
+        try {
+            var results = batchLoader.apply(batch.keySet());
+            batch.forEach((key, future) -> future.complete(results.get(key)));
+        } catch (RuntimeException e) {
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package com.vincent.es.util;
 
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.vincent.es.entity.Student;
 
 import java.io.File;
@@ -9,8 +9,11 @@ import java.io.IOException;
 import java.util.List;
 
 public class SampleData {
+    private static final ObjectReader READER = JsonMappers.getDefault()
+            .readerFor(new TypeReference<List<Student>>() {});
+
     public static List<Student> get() throws IOException {
         var file = new File("students.json");
-        return new ObjectMapper().readValue(file, new TypeReference<>() {});
+        return READER.readValue(file);
     }
 }
@@ -0,0 +1,64 @@
+package com.vincent.es.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * search_after 分頁的游標，內含 point-in-time 編號與上一頁最後一筆的排序值。
+ * 對外以 Base64 字串傳遞，呼叫端不需理解其內容。
+ */
+public class SearchCursor {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String pitId;             // point-in-time 編號
+    private final List<String> searchAfter; // 上一頁最後一筆的排序值
+
+    public SearchCursor(String pitId, List<String> searchAfter) {
+        this.pitId = pitId;
+        this.searchAfter = searchAfter;
+    }
+
+    public static SearchCursor decode(String token) {
+        try {
+            var json = Base64.getUrlDecoder().decode(token);
+            Map<String, Object> map = MAPPER.readValue(json, new TypeReference<>() {});
+
+            @SuppressWarnings("unchecked")
+            var searchAfter = (List<String>) map.get("after");
+            return new SearchCursor((String) map.get("pit"), searchAfter);
+        } catch (IOException | IllegalArgumentException | ClassCastException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token, e);
+        }
+    }
+
+    public String encode() {
+        var map = new LinkedHashMap<String, Object>();
+        map.put("pit", pitId);
+        map.put("after", searchAfter);
+
+        try {
+            var json = MAPPER.writeValueAsString(map);
+            return Base64.getUrlEncoder()
+                    .withoutPadding()
+                    .encodeToString(json.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public String getPitId() {
+        return pitId;
+    }
+
+    public List<String> getSearchAfter() {
+        return searchAfter;
+    }
+}
@@ -1,17 +1,33 @@
 package com.vincent.es.util;
 
 import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
 import co.elastic.clients.elasticsearch._types.query_dsl.*;
+import co.elastic.clients.elasticsearch.core.search.SourceConfig;
+import co.elastic.clients.json.JsonpMapper;
 import org.springframework.util.CollectionUtils;
 
+import java.io.StringWriter;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 public class SearchInfo {
+    private static final Map<Class<?>, List<String>> PROJECTION_FIELDS = new ConcurrentHashMap<>();
+
     private BoolQuery boolQuery;                            // 查詢條件
     private List<FunctionScore> functionScores = List.of(); // 計分函數
     private List<SortOptions> sortOptions = List.of();      // 排序方式
     private Integer from;                                   // 資料的跳過數量
     private Integer size;                                   // 資料的擷取數量
+    private String cursor;                                  // search_after 分頁的游標，第一頁為 null
+    private List<String> sourceIncludes = List.of();        // 只回傳這些 _source 欄位，空表示全部
+    private List<String> sourceExcludes = List.of();        // 不回傳這些 _source 欄位
+    private Map<String, Aggregation> aggregations = Map.of(); // 聚合名稱與聚合方式
 
     public SearchInfo() {
         var matchAll = MatchAllQuery.of(b -> b)._toQuery();
@@ -70,6 +86,108 @@ public class SearchInfo {
         this.size = size;
     }
 
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public List<String> getSourceIncludes() {
+        return sourceIncludes;
+    }
+
+    public void setSourceIncludes(List<String> sourceIncludes) {
+        this.sourceIncludes = sourceIncludes;
+    }
+
+    public List<String> getSourceExcludes() {
+        return sourceExcludes;
+    }
+
+    public void setSourceExcludes(List<String> sourceExcludes) {
+        this.sourceExcludes = sourceExcludes;
+    }
+
+    public Map<String, Aggregation> getAggregations() {
+        return aggregations;
+    }
+
+    public void setAggregations(Map<String, Aggregation> aggregations) {
+        this.aggregations = aggregations;
+    }
+
+    /**
+     * 將查詢條件、計分函數、排序、分頁與 _source 過濾序列化成 JSON，內容相同的 SearchInfo 會得到相同字串，可作為快取的 key。
+     * 結果也是合法的 search 請求內容，可作為 search template 的原始碼。
+     */
+    public String toCanonicalJson(JsonpMapper mapper) {
+        var writer = new StringWriter();
+        var generator = mapper.jsonProvider().createGenerator(writer);
+
+        generator.writeStartObject();
+        generator.writeKey("query");
+        toQuery().serialize(generator, mapper);
+        generator.writeKey("sort");
+        generator.writeStartArray();
+        sortOptions.forEach(sort -> sort.serialize(generator, mapper));
+        generator.writeEnd();
+        if (from != null) {
+            generator.write("from", from);
+        }
+        if (size != null) {
+            generator.write("size", size);
+        }
+        var sourceConfig = toSourceConfig();
+        if (sourceConfig != null) {
+            generator.writeKey("_source");
+            sourceConfig.serialize(generator, mapper);
+        }
+        generator.writeEnd();
+        generator.close();
+
+        return writer.toString();
+    }
+
+    // 沒有設定 includes 與 excludes 時回傳 null，即取得完整的 _source
+    public SourceConfig toSourceConfig() {
+        if (CollectionUtils.isEmpty(sourceIncludes) && CollectionUtils.isEmpty(sourceExcludes)) {
+            return null;
+        }
+
+        return SourceConfig.of(b -> b.filter(f -> {
+            if (!CollectionUtils.isEmpty(sourceIncludes)) {
+                f.includes(sourceIncludes);
+            }
+            if (!CollectionUtils.isEmpty(sourceExcludes)) {
+                f.excludes(sourceExcludes);
+            }
+            return f;
+        }));
+    }
+
+    // 未指定 includes 時，以 projection 類別宣告的欄位作為 includes
+    public SourceConfig toSourceConfig(Class<?> projection) {
+        if (!CollectionUtils.isEmpty(sourceIncludes)) {
+            return toSourceConfig();
+        }
+
+        var fields = PROJECTION_FIELDS.computeIfAbsent(projection, clazz -> Arrays
+                .stream(clazz.getDeclaredFields())
+                .filter(field -> !Modifier.isStatic(field.getModifiers()))
+                .map(Field::getName)
+                .collect(Collectors.toUnmodifiableList()));
+
+        return SourceConfig.of(b -> b.filter(f -> {
+            f.includes(fields);
+            if (!CollectionUtils.isEmpty(sourceExcludes)) {
+                f.excludes(sourceExcludes);
+            }
+            return f;
+        }));
+    }
+
     // library 使用 Query 類別當作條件的傳遞介面
     public Query toQuery() {
         if (CollectionUtils.isEmpty(functionScores)) {
@@ -0,0 +1,44 @@
+package com.vincent.es.util;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.FieldValueFactorModifier;
+import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
+import co.elastic.clients.json.JsonData;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 預先定義的查詢形狀。欄位值以 mustache 參數（如 "{{department}}"）表示，
+ * 註冊為 ES 的 search template 後，每次查詢只需傳送參數。
+ */
+public class SearchTemplates {
+    public static final String DEPARTMENT_GRADE_TEXT = "student-department-grade-text";
+
+    private SearchTemplates() {}
+
+    /**
+     * 參數：department、minGrade、maxGrade、text；依操行成績計分。
+     */
+    public static SearchInfo departmentGradeText() {
+        var departmentQuery = SearchUtils.createTermQuery("departments.keyword", "{{department}}");
+        var gradeQuery = new RangeQuery.Builder()
+                .field("grade")
+                .gte(JsonData.of("{{minGrade}}"))
+                .lte(JsonData.of("{{maxGrade}}"))
+                .build()
+                ._toQuery();
+        var textQuery = SearchUtils.createMatchQuery(Set.of("name", "introduction"), "{{text}}");
+
+        var bool = BoolQuery.of(b -> b
+                .filter(departmentQuery, gradeQuery)
+                .must(textQuery));
+        var conductScore = SearchUtils
+                .createFieldValueFactor("conductScore", 1.0, FieldValueFactorModifier.None, 0.0);
+
+        var info = SearchInfo.of(bool);
+        info.setFunctionScores(List.of(conductScore));
+
+        return info;
+    }
+}
@@ -1,11 +1,13 @@
 package com.vincent.es.util;
 
 import co.elastic.clients.elasticsearch._types.*;
+import co.elastic.clients.elasticsearch._types.aggregations.*;
 import co.elastic.clients.elasticsearch._types.query_dsl.*;
 import co.elastic.clients.json.JsonData;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -150,6 +152,24 @@ public class SearchUtils {
         return bool.build()._toQuery();
     }
 
+    /**
+     * <pre>
+     *     {
+     *         "nested": {
+     *             "path": {@param path},
+     *             "query": {@param query}
+     *         }
+     *     }
+     * </pre>
+     */
+    public static Query createNestedQuery(String path, Query query) {
+        return new NestedQuery.Builder()
+                .path(path)
+                .query(query)
+                .build()
+                ._toQuery();
+    }
+
     /**
      * <pre>
      *     {
@@ -189,6 +209,29 @@ public class SearchUtils {
         return createSortOption(field, order, null);
     }
 
+    /**
+     * <pre>
+     *     {
+     *         "{@param field}": {
+     *             "order": {@param order},
+     *             "mode": {@param mode},
+     *             "nested": {
+     *                 "path": {@param nestedPath}
+     *             }
+     *         }
+     *     }
+     * </pre>
+     */
+    public static SortOptions createNestedSortOption(String field, SortOrder order, SortMode mode, String nestedPath) {
+        var fieldSort = new FieldSort.Builder()
+                .field(field)
+                .order(order)
+                .mode(mode)
+                .nested(b -> b.path(nestedPath))
+                .build();
+        return SortOptions.of(b -> b.field(fieldSort));
+    }
+
     /**
      * <pre>
      *     {
@@ -293,4 +336,110 @@ public class SearchUtils {
                 .decay(decay)
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * <pre>
+     *     {
+     *         "terms": {
+     *             "field": {@param field},
+     *             "size": {@param size}
+     *         }
+     *     }
+     * </pre>
+     */
+    public static Aggregation createTermsAggregation(String field, Integer size) {
+        return new TermsAggregation.Builder()
+                .field(field)
+                .size(size)
+                .build()
+                ._toAggregation();
+    }
+
+    /**
+     * <pre>
+     *     {
+     *         "histogram": {
+     *             "field": {@param field},
+     *             "interval": {@param interval}
+     *         }
+     *     }
+     * </pre>
+     */
+    public static Aggregation createHistogramAggregation(String field, double interval) {
+        return new HistogramAggregation.Builder()
+                .field(field)
+                .interval(interval)
+                .build()
+                ._toAggregation();
+    }
+
+    /**
+     * <pre>
+     *     {
+     *         "date_histogram": {
+     *             "field": {@param field},
+     *             "calendar_interval": {@param interval},
+     *             "format": {@param format}
+     *         }
+     *     }
+     * </pre>
+     */
+    public static Aggregation createDateHistogramAggregation(String field, CalendarInterval interval, String format) {
+        return new DateHistogramAggregation.Builder()
+                .field(field)
+                .calendarInterval(interval)
+                .format(format)
+                .build()
+                ._toAggregation();
+    }
+
+    /**
+     * <pre>
+     *     {
+     *         "stats": {
+     *             "field": {@param field}
+     *         }
+     *     }
+     * </pre>
+     */
+    public static Aggregation createStatsAggregation(String field) {
+        return new StatsAggregation.Builder()
+                .field(field)
+                .build()
+                ._toAggregation();
+    }
+
+    /**
+     * <pre>
+     *     {
+     *         "nested": {
+     *             "path": {@param path}
+     *         },
+     *         "aggs": {@param subAggregations}
+     *     }
+     * </pre>
+     */
+    public static Aggregation createNestedAggregation(String path, Map<String, Aggregation> subAggregations) {
+        var nested = NestedAggregation.of(b -> b.path(path));
+        return Aggregation.of(b -> b
+                .nested(nested)
+                .aggregations(subAggregations));
+    }
+
+    /**
+     * <pre>
+     *     {
+     *         "source": {@param source},
+     *         "params": {@param params}
+     *     }
+     * </pre>
+     */
+    public static Script createInlineScript(String source, Map<String, Object> params) {
+        var jsonParams = params.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> JsonData.of(e.getValue())));
+
+        return Script.of(b -> b.inline(i -> i
+                .source(source)
+                .params(jsonParams)));
+    }
+}
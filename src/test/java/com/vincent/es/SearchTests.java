@@ -1,14 +1,21 @@
 package com.vincent.es;
 
+import co.elastic.clients.elasticsearch._types.Refresh;
+import co.elastic.clients.elasticsearch._types.Result;
 import co.elastic.clients.elasticsearch._types.SortMode;
 import co.elastic.clients.elasticsearch._types.SortOrder;
+import co.elastic.clients.elasticsearch._types.aggregations.CalendarInterval;
 import co.elastic.clients.elasticsearch._types.query_dsl.BoolQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.FieldValueFactorModifier;
 import co.elastic.clients.elasticsearch._types.query_dsl.MatchAllQuery;
 import com.vincent.es.entity.Student;
+import com.vincent.es.entity.StudentSummary;
 import com.vincent.es.repository.StudentEsRepository;
+import com.vincent.es.repository.StudentIndexSettings;
+import com.vincent.es.repository.VersionConflictException;
 import com.vincent.es.util.SampleData;
 import com.vincent.es.util.SearchInfo;
+import com.vincent.es.util.SearchTemplates;
 import com.vincent.es.util.SearchUtils;
 import org.junit.Before;
 import org.junit.Test;
@@ -20,11 +27,16 @@ import org.springframework.test.context.junit4.SpringRunner;
 import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 @RunWith(SpringRunner.class)
@@ -34,14 +46,13 @@ public class SearchTests {
     @Autowired
     private StudentEsRepository repository;
 
-    @SuppressWarnings({"squid:S2925"})
     @Before
-    public void setup() throws IOException, InterruptedException {
-        repository.init();
+    public void setup() throws IOException {
+        repository.deleteIndex();
+        repository.init().join();
 
         var documents = SampleData.get();
-        repository.insert(documents);
-        Thread.sleep(2000);
+        repository.insert(documents, null, Refresh.True);
     }
 
     @Test
@@ -132,7 +143,7 @@ public class SearchTests {
 
     @Test
     public void testSortByMultipleFields() {
-        var coursePointSort = SearchUtils.createSortOption("courses.point", SortOrder.Desc, SortMode.Max);
+        var coursePointSort = SearchUtils.createNestedSortOption("courses.point", SortOrder.Desc, SortMode.Max, "courses");
         var nameSort = SearchUtils.createSortOption("name.keyword", SortOrder.Asc);
 
         var query = MatchAllQuery.of(b -> b)._toQuery();
@@ -163,6 +174,221 @@ public class SearchTests {
         assertDocumentIds(false, students, "101", "102");
     }
 
+    @Test
+    public void testCursorPaging() {
+        var gradeSort = SearchUtils.createSortOption("grade", SortOrder.Desc);
+
+        var searchInfo = new SearchInfo();
+        searchInfo.setSortOptions(List.of(gradeSort));
+        searchInfo.setSize(3);
+
+        var firstPage = repository.findPage(searchInfo);
+        searchInfo.setCursor(firstPage.getNextCursor());
+        var secondPage = repository.findPage(searchInfo);
+
+        // Dora -> Mario -> Vincent | Winnie
+        assertDocumentIds(false, firstPage.getContent(), "101", "102", "103");
+        assertDocumentIds(false, secondPage.getContent(), "104");
+        assertFalse(secondPage.hasNext());
+    }
+
+    @Test
+    public void testStream() {
+        var gradeSort = SearchUtils.createSortOption("grade", SortOrder.Asc);
+
+        var searchInfo = new SearchInfo();
+        searchInfo.setSortOptions(List.of(gradeSort));
+        searchInfo.setSize(1);
+
+        List<Student> students;
+        try (var stream = repository.stream(searchInfo)) {
+            students = stream.collect(Collectors.toList());
+        }
+
+        // Winnie -> Vincent -> Mario -> Dora
+        assertDocumentIds(false, students, "104", "103", "102", "101");
+    }
+
+    @Test
+    public void testSlicedExport() {
+        var students = new CopyOnWriteArrayList<Student>();
+
+        var count = repository.export(new SearchInfo(), 2, students::add);
+
+        assertEquals(4, count);
+        assertDocumentIds(true, students, "101", "102", "103", "104");
+    }
+
+    @Test
+    public void testFindEach() {
+        var query = SearchUtils.createRangeQuery("grade", 2, null);
+        var searchInfo = SearchInfo.of(query);
+        searchInfo.setSortOptions(List.of(SearchUtils.createSortOption("grade", SortOrder.Desc)));
+
+        var students = new ArrayList<Student>();
+        var count = repository.findEach(searchInfo, students::add);
+
+        assertEquals(3, count);
+        // Dora -> Mario -> Vincent
+        assertDocumentIds(students, "101", "102", "103");
+    }
+
+    @Test
+    public void testFindAll() {
+        var gradeQuery = SearchUtils.createTermQuery("grade", 4);
+        var departmentQuery = SearchUtils.createTermQuery("departments.keyword", "財務金融");
+
+        var results = repository.findAll(List.of(SearchInfo.of(gradeQuery), SearchInfo.of(departmentQuery)));
+
+        assertEquals(2, results.size());
+        // Dora
+        assertDocumentIds(results.get(0), "101");
+        // Vincent, Dora
+        assertDocumentIds(true, results.get(1), "101", "103");
+    }
+
+    @Test
+    public void testFindAllById() {
+        var students = repository.findAllById(List.of("104", "999", "101"));
+
+        // Winnie -> Dora
+        assertDocumentIds(false, students, "104", "101");
+    }
+
+    @Test
+    public void testProjection() {
+        var gradeSort = SearchUtils.createSortOption("grade", SortOrder.Desc);
+
+        var searchInfo = new SearchInfo();
+        searchInfo.setSortOptions(List.of(gradeSort));
+
+        var summaries = repository.find(searchInfo, StudentSummary.class);
+
+        // Dora -> Mario -> Vincent -> Winnie
+        var ids = summaries.stream()
+                .map(StudentSummary::getId)
+                .collect(Collectors.toList());
+        assertEquals(List.of("101", "102", "103", "104"), ids);
+        assertEquals(4, summaries.get(0).getGrade());
+    }
+
+    @Test
+    public void testSourceExcludes() {
+        var searchInfo = new SearchInfo();
+        searchInfo.setSourceExcludes(List.of("introduction", "courses"));
+
+        var students = repository.find(searchInfo);
+
+        assertDocumentIds(true, students, "101", "102", "103", "104");
+        assertTrue(students.stream().allMatch(s -> s.getIntroduction() == null && s.getCourses() == null));
+    }
+
+    @Test
+    public void testAggregation() {
+        var searchInfo = new SearchInfo();
+        searchInfo.setAggregations(Map.of(
+                "departments", SearchUtils.createTermsAggregation("departments.keyword", 10),
+                "grades", SearchUtils.createHistogramAggregation("grade", 2),
+                "englishYears", SearchUtils.createDateHistogramAggregation("englishIssuedDate", CalendarInterval.Year, "yyyy"),
+                "conductScore", SearchUtils.createStatsAggregation("conductScore"),
+                "courses", SearchUtils.createNestedAggregation("courses", Map.of(
+                        "points", SearchUtils.createStatsAggregation("courses.point")))
+        ));
+
+        var result = repository.aggregate(searchInfo);
+
+        assertEquals(4, result.getTotalHits());
+        assertEquals(Long.valueOf(2), result.getTermCounts("departments").get("財務金融"));
+        assertEquals(4, result.getTermCounts("departments").size());
+        assertEquals(Map.of(0.0, 1L, 2.0, 2L, 4.0, 1L), result.getHistogramCounts("grades"));
+        assertEquals(Map.of("2021", 3L, "2022", 1L), result.getDateHistogramCounts("englishYears"));
+
+        var conductScore = result.getStats("conductScore");
+        assertEquals(71.0, conductScore.min(), 0);
+        assertEquals(86.0, conductScore.max(), 0);
+        assertEquals(78.5, conductScore.avg(), 0);
+
+        var coursePoints = result.getNested("courses").getStats("points");
+        assertEquals(12, coursePoints.count());
+        assertEquals(5.0, coursePoints.max(), 0);
+        assertEquals(34.0, coursePoints.sum(), 0);
+    }
+
+    @Test
+    public void testInitReindexWhenSettingsChanged() {
+        var settings = new StudentIndexSettings();
+        settings.setNumberOfShards(2);
+        repository.setIndexSettings(settings);
+
+        try {
+            repository.init().join();
+            var students = repository.find(new SearchInfo());
+
+            assertDocumentIds(true, students, "101", "102", "103", "104");
+        } finally {
+            repository.setIndexSettings(new StudentIndexSettings());
+        }
+    }
+
+    @Test
+    public void testPartialUpdate() {
+        var fields = Map.<String, Object>of("conductScore", 90);
+
+        assertEquals(Result.Updated, repository.update("103", fields, Refresh.True));
+        assertEquals(Result.NoOp, repository.update("103", fields, Refresh.True));
+        assertEquals(Result.NotFound, repository.update("999", fields, Refresh.True));
+
+        var student = repository.findById("103").orElseThrow();
+        assertEquals(90, student.getConductScore());
+        assertEquals("Vincent Zheng", student.getName());
+    }
+
+    @Test
+    public void testOptimisticConcurrency() {
+        var read = repository.findVersionedById("103").orElseThrow();
+        var student = read.getDocument();
+        student.setGrade(3);
+
+        var saved = repository.save(student, read.getVersion(), Refresh.True);
+
+        assertEquals(3, repository.findById("103").orElseThrow().getGrade());
+        assertThrows(VersionConflictException.class,
+                () -> repository.save(student, read.getVersion(), null));
+        assertThrows(VersionConflictException.class,
+                () -> repository.update("103", Map.of("grade", 4), read.getVersion(), null));
+        assertEquals(Result.Updated, repository.update("103", Map.of("grade", 4), saved.getVersion(), null));
+    }
+
+    @Test
+    public void testUpdateByQuery() {
+        var query = SearchUtils.createRangeQuery("grade", null, 3);
+        var script = SearchUtils.createInlineScript("ctx._source.grade += params.step", Map.of("step", 1));
+
+        var updated = repository.updateByQuery(SearchInfo.of(query), script);
+        var students = repository.find(SearchInfo.of(SearchUtils.createTermQuery("grade", 4)));
+
+        assertEquals(3, updated);
+        // Dora, Mario
+        assertDocumentIds(true, students, "101", "102");
+    }
+
+    @Test
+    public void testSearchTemplate() {
+        repository.registerSearchTemplate(SearchTemplates.DEPARTMENT_GRADE_TEXT, SearchTemplates.departmentGradeText());
+
+        var params = Map.<String, Object>of(
+                "department", "財務金融", "minGrade", 1, "maxGrade", 4, "text", "vincent wealth");
+        var students = repository.findByTemplate(SearchTemplates.DEPARTMENT_GRADE_TEXT, params);
+        // Vincent, Dora
+        assertDocumentIds(true, students, "101", "103");
+
+        params = Map.of(
+                "department", "財務金融", "minGrade", 1, "maxGrade", 3, "text", "vincent wealth");
+        students = repository.findByTemplate(SearchTemplates.DEPARTMENT_GRADE_TEXT, params);
+        // Vincent
+        assertDocumentIds(true, students, "103");
+    }
+
     @Test
     public void testFunctionScore_FieldValueFactor() {
         var fieldValueFactorScore = SearchUtils
@@ -184,8 +410,8 @@ public class SearchTests {
         var departmentScore = SearchUtils
                 .createConditionalWeightFunctionScore(departmentQuery, 3.0);
 
-        var courseQuery = SearchUtils
-                .createTermQuery("courses.name.keyword", "程式設計");
+        var courseQuery = SearchUtils.createNestedQuery("courses", SearchUtils
+                .createTermQuery("courses.name.keyword", "程式設計"));
         var courseScore = SearchUtils
                 .createConditionalWeightFunctionScore(courseQuery, 1.5);
 
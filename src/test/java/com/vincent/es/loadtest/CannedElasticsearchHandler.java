@@ -0,0 +1,132 @@
+package com.vincent.es.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vincent.es.entity.Student;
+import com.vincent.es.support.FakeElasticsearchServer;
+import com.vincent.es.support.FakeElasticsearchServer.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 對 _doc、_create、_bulk、_search、_search/template 與 _mget 回傳固定內容，
+ * 並讓啟動時的別名檢查、建立索引與註冊 search template 成功，使應用程式能在沒有叢集的情況下運作。
+ * 查詢結果來自建構時給定的文件，寫入不會改變這些文件。
+ */
+public class CannedElasticsearchHandler implements FakeElasticsearchServer.Handler {
+    private static final String INDEX = "student";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, String> sources; // 文件編號 -> _source
+    private final String searchResponse;
+
+    public CannedElasticsearchHandler(List<Student> docs) {
+        this.sources = docs.stream()
+                .collect(Collectors.toMap(Student::getId, this::toJson));
+        this.searchResponse = "{\"took\":1,\"timed_out\":false,"
+                + "\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+                + "\"hits\":{\"total\":{\"value\":" + docs.size() + ",\"relation\":\"eq\"},\"max_score\":1.0,"
+                + "\"hits\":[" + sources.keySet().stream().map(this::hit).collect(Collectors.joining(",")) + "]}}";
+    }
+
+    @Override
+    public Response handle(String method, String path, String body) {
+        // 別名與索引都不存在，讓 init() 走建立索引的流程
+        if ("HEAD".equals(method)) {
+            return new Response(404, "");
+        }
+        if (path.contains("/_scripts/")) {
+            return Response.ok("{\"acknowledged\":true}");
+        }
+        if (path.endsWith("/_bulk")) {
+            return Response.ok(bulk(body));
+        }
+        if (path.endsWith("/_mget")) {
+            return Response.ok(mget(body));
+        }
+        if (path.contains("/_search")) {
+            return Response.ok(searchResponse);
+        }
+        if (path.contains("/_create/") || ("PUT".equals(method) || "POST".equals(method)) && path.contains("/_doc/")) {
+            return new Response(201, written(lastSegment(path), "created"));
+        }
+        if ("GET".equals(method) && path.contains("/_doc/")) {
+            var id = lastSegment(path);
+            return sources.containsKey(id)
+                    ? Response.ok(found(id))
+                    : new Response(404, notFound(id));
+        }
+        if ("PUT".equals(method) && path.lastIndexOf('/') == 0) {
+            var index = lastSegment(path);
+            return Response.ok("{\"acknowledged\":true,\"shards_acknowledged\":true,\"index\":\"" + index + "\"}");
+        }
+
+        return new Response(400, "{\"error\":\"unsupported " + method + " " + path + "\",\"status\":400}");
+    }
+
+    private String bulk(String body) {
+        var lines = body.lines().filter(l -> !l.isBlank()).collect(Collectors.toList());
+        var items = new ArrayList<String>();
+
+        for (var i = 0; i < lines.size(); i += 2) {
+            var action = readTree(lines.get(i)).fields().next();
+            var id = action.getValue().path("_id").asText();
+            items.add("{\"" + action.getKey() + "\":{\"_index\":\"" + INDEX + "\",\"_id\":\"" + id
+                    + "\",\"status\":201,\"result\":\"created\"}}");
+        }
+
+        return "{\"took\":1,\"errors\":false,\"items\":[" + String.join(",", items) + "]}";
+    }
+
+    private String mget(String body) {
+        var docs = new ArrayList<String>();
+        readTree(body).path("ids").forEach(id -> {
+            var text = id.asText();
+            docs.add(sources.containsKey(text) ? found(text) : notFound(text));
+        });
+
+        return "{\"docs\":[" + String.join(",", docs) + "]}";
+    }
+
+    private String hit(String id) {
+        return "{\"_index\":\"" + INDEX + "\",\"_id\":\"" + id + "\",\"_score\":1.0,\"_source\":" + sources.get(id) + "}";
+    }
+
+    private String found(String id) {
+        return "{\"_index\":\"" + INDEX + "\",\"_id\":\"" + id + "\",\"_version\":1,\"_seq_no\":0,"
+                + "\"_primary_term\":1,\"found\":true,\"_source\":" + sources.get(id) + "}";
+    }
+
+    private String notFound(String id) {
+        return "{\"_index\":\"" + INDEX + "\",\"_id\":\"" + id + "\",\"found\":false}";
+    }
+
+    private String written(String id, String result) {
+        return "{\"_index\":\"" + INDEX + "\",\"_id\":\"" + id + "\",\"_version\":1,\"result\":\"" + result + "\","
+                + "\"_shards\":{\"total\":2,\"successful\":1,\"failed\":0},\"_seq_no\":0,\"_primary_term\":1}";
+    }
+
+    private static String lastSegment(String path) {
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    private String toJson(Student doc) {
+        try {
+            return objectMapper.writeValueAsString(doc);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.vincent.es.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 保存單一端點每個請求的延遲 (奈秒) 與失敗次數，用來計算百分位數。
+ */
+public class LatencyRecorder {
+    private final ReentrantLock lock = new ReentrantLock();
+    private long[] latencies = new long[1024];
+    private int count;
+    private int errors;
+
+    public void record(long nanos, boolean succeeded) {
+        lock.lock();
+        try {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            if (!succeeded) {
+                errors++;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCount() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getErrors() {
+        lock.lock();
+        try {
+            return errors;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // percentile 介於 0 與 1 之間，例如 0.999；沒有資料時回傳 0
+    public long getPercentile(double percentile) {
+        long[] sorted;
+        lock.lock();
+        try {
+            sorted = Arrays.copyOf(latencies, count);
+        } finally {
+            lock.unlock();
+        }
+
+        if (sorted.length == 0) {
+            return 0;
+        }
+        Arrays.sort(sorted);
+        var index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)];
+    }
+}
@@ -0,0 +1,123 @@
+package com.vincent.es.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 以固定速率依序輪流對各端點送出請求，不等待前一個請求完成 (open model)。
+ * 延遲從預定送出的時間開始計算，服務變慢造成的排隊時間也會反映在百分位數上。
+ */
+public class LoadGenerator {
+    private final HttpClient httpClient;
+    private final URI baseUri;
+    private final Duration requestTimeout;
+
+    public LoadGenerator(URI baseUri) {
+        this(baseUri, Duration.ofSeconds(30));
+    }
+
+    public LoadGenerator(URI baseUri, Duration requestTimeout) {
+        this.baseUri = baseUri;
+        this.requestTimeout = requestTimeout;
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public Report run(List<Endpoint> endpoints, int requestsPerSecond, Duration duration) {
+        var recorders = new LinkedHashMap<String, LatencyRecorder>();
+        endpoints.forEach(endpoint -> recorders.put(endpoint.name, new LatencyRecorder()));
+
+        var intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        var total = duration.toNanos() / intervalNanos;
+        var futures = new ArrayList<CompletableFuture<?>>();
+        var start = System.nanoTime();
+
+        for (var i = 0L; i < total; i++) {
+            var scheduledAt = start + i * intervalNanos;
+            var waitNanos = scheduledAt - System.nanoTime();
+            if (waitNanos > 0) {
+                LockSupport.parkNanos(waitNanos);
+            }
+
+            var endpoint = endpoints.get((int) (i % endpoints.size()));
+            var recorder = recorders.get(endpoint.name);
+            var request = endpoint.requestFactory.apply(baseUri.resolve(endpoint.path))
+                    .timeout(requestTimeout)
+                    .build();
+
+            futures.add(httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> recorder.record(
+                            System.nanoTime() - scheduledAt, error == null && response.statusCode() < 400)));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+                .exceptionally(e -> null)
+                .join();
+
+        return new Report(recorders, System.nanoTime() - start);
+    }
+
+    public static class Endpoint {
+        private final String name;
+        private final String path;
+        private final Function<URI, HttpRequest.Builder> requestFactory;
+
+        public Endpoint(String name, String path, Function<URI, HttpRequest.Builder> requestFactory) {
+            this.name = name;
+            this.path = path;
+            this.requestFactory = requestFactory;
+        }
+
+        public static Endpoint get(String name, String path) {
+            return new Endpoint(name, path, uri -> HttpRequest.newBuilder(uri).GET());
+        }
+
+        public static Endpoint post(String name, String path, String jsonBody) {
+            return new Endpoint(name, path, uri -> HttpRequest.newBuilder(uri)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(jsonBody)));
+        }
+    }
+
+    public static class Report {
+        private final Map<String, LatencyRecorder> recorders;
+        private final long elapsedNanos;
+
+        private Report(Map<String, LatencyRecorder> recorders, long elapsedNanos) {
+            this.recorders = recorders;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public Map<String, LatencyRecorder> getRecorders() {
+            return recorders;
+        }
+
+        public double getThroughput(String endpoint) {
+            return recorders.get(endpoint).getCount() / (elapsedNanos / 1e9);
+        }
+
+        @Override
+        public String toString() {
+            var sb = new StringBuilder(String.format("%-16s %8s %7s %10s %9s %9s %9s%n",
+                    "endpoint", "requests", "errors", "req/s", "p50(ms)", "p99(ms)", "p999(ms)"));
+            recorders.forEach((name, recorder) -> sb.append(String.format("%-16s %8d %7d %10.1f %9.2f %9.2f %9.2f%n",
+                    name, recorder.getCount(), recorder.getErrors(), getThroughput(name),
+                    recorder.getPercentile(0.5) / 1e6,
+                    recorder.getPercentile(0.99) / 1e6,
+                    recorder.getPercentile(0.999) / 1e6)));
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.vincent.es.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vincent.es.Application;
+import com.vincent.es.entity.Student;
+import com.vincent.es.support.FakeElasticsearchServer;
+import com.vincent.es.util.SampleData;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 啟動整個應用程式並連到 FakeElasticsearchServer，以固定速率呼叫 REST 端點，
+ * 量測 controller、repository 與 transport 本身的延遲與吞吐量。
+ * 只在 -Dloadtest=true 時執行 (mvn -P loadtest test)，可用以下系統屬性調整：
+ * loadtest.rate (每秒請求數)、loadtest.warmup 與 loadtest.duration (秒)、loadtest.es-latency (ES 回應延遲，毫秒)。
+ */
+public class StudentControllerLoadTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private FakeElasticsearchServer server;
+    private ConfigurableApplicationContext context;
+    private List<Student> students;
+
+    @Before
+    public void setup() throws IOException {
+        Assume.assumeTrue(Boolean.getBoolean("loadtest"));
+
+        students = SampleData.get();
+        server = new FakeElasticsearchServer();
+        server.handleDefault(new CannedElasticsearchHandler(students));
+        server.setLatency(Duration.ofMillis(Long.getLong("loadtest.es-latency", 2)));
+
+        // 以命令列參數覆蓋 application.properties，並關閉快取讓每個請求都經過 transport
+        context = new SpringApplicationBuilder(Application.class).run(
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--app.elasticsearch.hosts=" + server.getHttpHost().toURI(),
+                "--app.cache.find-by-id.enabled=false",
+                "--app.cache.find.enabled=false");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (context != null) {
+            context.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testEndpoints() throws IOException {
+        var port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+        var generator = new LoadGenerator(URI.create("http://localhost:" + port));
+
+        var student = objectMapper.writeValueAsString(students.get(0));
+        var batch = objectMapper.writeValueAsString(students);
+        var department = URLEncoder.encode("財務金融", StandardCharsets.UTF_8);
+        var endpoints = List.of(
+                LoadGenerator.Endpoint.get("get", "/students/103"),
+                LoadGenerator.Endpoint.get("mget", "/students?ids=101,102,103"),
+                LoadGenerator.Endpoint.get("search", "/students/search?department=" + department + "&text=career"),
+                LoadGenerator.Endpoint.post("insert", "/students", student),
+                LoadGenerator.Endpoint.post("bulk", "/students/bulk", batch));
+
+        var rate = Integer.getInteger("loadtest.rate", 200);
+        // 先以相同速率暖機，讓 JIT 編譯與連線池建立完成，結果不列入報告
+        generator.run(endpoints, rate, Duration.ofSeconds(Long.getLong("loadtest.warmup", 5)));
+        var report = generator.run(endpoints, rate, Duration.ofSeconds(Long.getLong("loadtest.duration", 10)));
+
+        System.out.println(report);
+
+        report.getRecorders().forEach((name, recorder) -> {
+            assertTrue(name, recorder.getCount() > 0);
+            assertEquals(name, 0, recorder.getErrors());
+        });
+    }
+}
@@ -0,0 +1,46 @@
+package com.vincent.es.metrics;
+
+import com.vincent.es.util.BoundedCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class StudentEsMetricsTests {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final StudentEsMetrics metrics = new StudentEsMetrics(registry);
+
+    @Test
+    public void testLatencyTaggedByOperationAndOutcome() {
+        metrics.recordLatency("get", TimeUnit.MILLISECONDS.toNanos(5), true);
+        metrics.recordLatency("get", TimeUnit.MILLISECONDS.toNanos(7), true);
+        metrics.recordLatency("get", TimeUnit.MILLISECONDS.toNanos(9), false);
+
+        var succeeded = registry.get("es.repository.requests").tags("operation", "get", "outcome", "success").timer();
+        var failed = registry.get("es.repository.requests").tags("operation", "get", "outcome", "error").timer();
+        assertEquals(2, succeeded.count());
+        assertEquals(12.0, succeeded.totalTime(TimeUnit.MILLISECONDS), 0.001);
+        assertEquals(1, failed.count());
+    }
+
+    @Test
+    public void testCacheLookups() {
+        var cache = new BoundedCache<String, String>(10, Duration.ofMinutes(1));
+        metrics.registerCache("find_by_id", cache);
+
+        cache.put("a", "1");
+        cache.getIfPresent("a");
+        cache.getIfPresent("b");
+
+        assertEquals(1.0, cacheGets("hit"), 0);
+        assertEquals(1.0, cacheGets("miss"), 0);
+        assertEquals(1.0, registry.get("cache.size").tag("cache", "find_by_id").gauge().value(), 0);
+    }
+
+    private double cacheGets(String result) {
+        return registry.get("cache.gets").tags("cache", "find_by_id", "result", result).functionCounter().count();
+    }
+}
@@ -0,0 +1,142 @@
+package com.vincent.es.repository;
+
+import com.vincent.es.entity.Student;
+import com.vincent.es.support.FakeElasticsearchServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class BulkLoadSessionTests {
+    private static final String SHARDS = "{\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}}";
+
+    private FakeElasticsearchServer server;
+    private StudentEsRepository repository;
+
+    private final List<String> calls = new CopyOnWriteArrayList<>(); // 依序記錄收到的請求
+    // 開始載入前索引的設定；別名 student 指向 student_v1
+    private volatile String currentSettings = "{\"student_v1\":{\"settings\":{\"index\":"
+            + "{\"number_of_replicas\":\"2\",\"refresh_interval\":\"5s\"}}}}";
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeElasticsearchServer();
+        // GET /student/_settings/index.refresh_interval,index.number_of_replicas
+        server.handle("index.number_of_replicas", (method, path, body) -> {
+            calls.add("get settings");
+            return FakeElasticsearchServer.Response.ok(currentSettings);
+        });
+        server.handle("/_settings", (method, path, body) -> {
+            calls.add("settings " + path + " " + body);
+            return FakeElasticsearchServer.Response.ok("{\"acknowledged\":true}");
+        });
+        server.handle("/_bulk", (method, path, body) -> {
+            calls.add("bulk");
+            return FakeElasticsearchServer.Response.ok("{\"took\":1,\"errors\":false,\"items\":["
+                    + "{\"create\":{\"_index\":\"student\",\"_id\":\"1\",\"status\":201,\"result\":\"created\"}}]}");
+        });
+        server.handle("/_refresh", (method, path, body) -> {
+            calls.add("refresh");
+            return FakeElasticsearchServer.Response.ok(SHARDS);
+        });
+        server.handle("/_forcemerge", (method, path, body) -> {
+            calls.add("forcemerge");
+            return FakeElasticsearchServer.Response.ok(SHARDS);
+        });
+
+        var settings = new StudentIndexSettings();
+        settings.setRefreshInterval("30s");
+        settings.setNumberOfReplicas(1);
+        repository = new StudentEsRepository(server.createClient(), "student");
+        repository.setIndexSettings(settings);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testSuspendAndRestoreSettings() {
+        var result = repository.bulkLoad(List.of(createStudent()), false, null);
+
+        assertEquals(1, result.getSucceeded());
+        assertEquals(List.of(
+                "get settings",
+                "settings /student/_settings {\"number_of_replicas\":\"0\",\"refresh_interval\":\"-1\"}",
+                "bulk",
+                "settings /student_v1/_settings {\"number_of_replicas\":\"2\",\"refresh_interval\":\"5s\"}",
+                "refresh"
+        ), calls);
+    }
+
+    @Test
+    public void testRestoreSettingsChangedByOperator() {
+        // 副本數已被調整為 3，refresh_interval 未明確設定而使用預設值
+        currentSettings = "{\"student_v1\":{\"settings\":{\"index\":{\"number_of_replicas\":\"3\"}},"
+                + "\"defaults\":{\"index\":{\"refresh_interval\":\"1s\"}}},"
+                + "\"student_v2\":{\"settings\":{\"index\":{\"number_of_replicas\":\"1\",\"refresh_interval\":\"10s\"}}}}";
+
+        repository.bulkLoad(List.of(createStudent()), false, null);
+
+        assertEquals(List.of(
+                "settings /student_v1/_settings {\"number_of_replicas\":\"3\",\"refresh_interval\":\"1s\"}",
+                "settings /student_v2/_settings {\"number_of_replicas\":\"1\",\"refresh_interval\":\"10s\"}",
+                "refresh"
+        ), calls.subList(calls.size() - 3, calls.size()));
+    }
+
+    @Test
+    public void testForceMerge() {
+        repository.bulkLoad(List.of(createStudent()), true, null);
+
+        assertEquals("forcemerge", calls.get(calls.size() - 1));
+    }
+
+    @Test
+    public void testRestoreSettingsWhenLoadFails() {
+        Iterable<Student> failingDocs = () -> new Iterator<>() {
+            private boolean returned;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Student next() {
+                if (returned) {
+                    throw new NoSuchElementException("source is broken");
+                }
+                returned = true;
+                return createStudent();
+            }
+        };
+
+        try {
+            repository.bulkLoad(failingDocs, false, null);
+            fail();
+        } catch (NoSuchElementException e) {
+            assertEquals("source is broken", e.getMessage());
+        }
+
+        assertEquals("settings /student_v1/_settings {\"number_of_replicas\":\"2\",\"refresh_interval\":\"5s\"}",
+                calls.get(calls.size() - 2));
+        assertEquals("refresh", calls.get(calls.size() - 1));
+    }
+
+    private Student createStudent() {
+        var student = new Student();
+        student.setId("1");
+        student.setName("Student 1");
+        return student;
+    }
+}
@@ -0,0 +1,26 @@
+package com.vincent.es.repository;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DocumentVersionTests {
+
+    @Test
+    public void testETagRoundTrip() {
+        var version = new DocumentVersion(42, 3);
+
+        assertEquals("\"3-42\"", version.toETag());
+        assertEquals(version, DocumentVersion.fromETag(version.toETag()));
+    }
+
+    @Test
+    public void testParseWeakETag() {
+        assertEquals(new DocumentVersion(7, 1), DocumentVersion.fromETag("W/\"1-7\""));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectInvalidETag() {
+        DocumentVersion.fromETag("\"abc\"");
+    }
+}
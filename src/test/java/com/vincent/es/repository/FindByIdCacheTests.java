@@ -0,0 +1,185 @@
+package com.vincent.es.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vincent.es.entity.Student;
+import com.vincent.es.support.FakeElasticsearchServer;
+import com.vincent.es.util.BoundedCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class FindByIdCacheTests {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private FakeElasticsearchServer server;
+    private StudentEsRepository repository;
+    private BoundedCache<String, Optional<VersionedDocument<Student>>> cache;
+
+    private final Map<String, Student> documents = new ConcurrentHashMap<>();
+    private final Map<String, Long> seqNos = new ConcurrentHashMap<>();
+    private final AtomicInteger getCount = new AtomicInteger();
+    private final List<List<String>> mgetIds = new CopyOnWriteArrayList<>();
+    private volatile boolean conflict; // 為 true 時寫入回應 409
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeElasticsearchServer();
+        server.handleDefault(this::handleDocument);
+        server.handle("/_mget", (method, path, body) -> FakeElasticsearchServer.Response.ok(handleMget(body)));
+
+        cache = new BoundedCache<>(100, Duration.ofMinutes(1));
+        repository = new StudentEsRepository(server.createClient(), "student");
+        repository.setFindByIdCache(cache);
+
+        addDocument("1", "Vincent");
+        addDocument("2", "Dennis");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testVersionedReadIsCached() {
+        var first = repository.findVersionedById("1").orElseThrow();
+        var second = repository.findVersionedById("1").orElseThrow();
+
+        assertEquals(1, getCount.get());
+        assertEquals(new DocumentVersion(0, 1), first.getVersion());
+        assertEquals(first.getVersion(), second.getVersion());
+        assertEquals("Vincent", repository.findById("1").orElseThrow().getName());
+        assertEquals(1, getCount.get());
+    }
+
+    @Test
+    public void testWriteInvalidatesCachedVersion() {
+        var read = repository.findVersionedById("1").orElseThrow();
+        read.getDocument().setName("Dennis");
+
+        var saved = repository.save(read.getDocument(), read.getVersion(), null);
+        var reread = repository.findVersionedById("1").orElseThrow();
+
+        assertEquals(2, getCount.get());
+        assertEquals(saved.getVersion(), reread.getVersion());
+        assertEquals("Dennis", reread.getDocument().getName());
+    }
+
+    @Test
+    public void testConflictInvalidatesCachedVersion() {
+        var read = repository.findVersionedById("1").orElseThrow();
+        conflict = true;
+
+        assertThrows(VersionConflictException.class,
+                () -> repository.save(read.getDocument(), read.getVersion(), null));
+        repository.findVersionedById("1");
+
+        assertEquals(2, getCount.get());
+    }
+
+    @Test
+    public void testCallerChangesDoNotLeakIntoCache() {
+        repository.findVersionedById("1").orElseThrow().getDocument().setName("Dennis");
+        repository.findAllById(List.of("2")).get(0).setName("Vincent");
+
+        assertEquals("Vincent", repository.findById("1").orElseThrow().getName());
+        assertEquals("Dennis", repository.findById("2").orElseThrow().getName());
+        assertEquals(1, getCount.get());
+    }
+
+    @Test
+    public void testFindAllByIdFetchesOnlyMisses() {
+        repository.findById("1");
+
+        var students = repository.findAllById(List.of("2", "1", "3"));
+        repository.findAllById(List.of("1", "2", "3"));
+
+        assertEquals(List.of("2", "1"), students.stream().map(Student::getId).collect(Collectors.toList()));
+        assertEquals(List.of(List.of("2", "3")), mgetIds);
+        assertEquals(new DocumentVersion(0, 1), cache.getIfPresent("2").orElseThrow().getVersion());
+    }
+
+    private void addDocument(String id, String name) {
+        var student = new Student();
+        student.setId(id);
+        student.setName(name);
+        documents.put(id, student);
+        seqNos.put(id, 0L);
+    }
+
+    private String handleMget(String body) {
+        var ids = new ArrayList<String>();
+        readTree(body).path("ids").forEach(id -> ids.add(id.asText()));
+        mgetIds.add(ids);
+
+        var docs = ids.stream()
+                .map(id -> documents.containsKey(id)
+                        ? "{\"_index\":\"student\",\"_id\":\"" + id + "\",\"_version\":1,\"_seq_no\":" + seqNos.get(id)
+                                + ",\"_primary_term\":1,\"found\":true,\"_source\":" + write(documents.get(id)) + "}"
+                        : "{\"_index\":\"student\",\"_id\":\"" + id + "\",\"found\":false}")
+                .collect(Collectors.joining(","));
+        return "{\"docs\":[" + docs + "]}";
+    }
+
+    // 依 HTTP method 模擬 GET /student/_doc/{id} 與 PUT /student/_doc/{id}
+    private FakeElasticsearchServer.Response handleDocument(String method, String path, String body) {
+        var id = path.substring(path.lastIndexOf('/') + 1);
+
+        if ("GET".equals(method)) {
+            getCount.incrementAndGet();
+            return FakeElasticsearchServer.Response.ok(
+                    "{\"_index\":\"student\",\"_id\":\"" + id + "\",\"_version\":1,\"_seq_no\":" + seqNos.get(id)
+                            + ",\"_primary_term\":1,\"found\":true,\"_source\":" + write(documents.get(id)) + "}");
+        }
+
+        if (conflict) {
+            return new FakeElasticsearchServer.Response(409, "{\"error\":{\"type\":\"version_conflict_engine_exception\","
+                    + "\"reason\":\"version conflict\"},\"status\":409}");
+        }
+
+        documents.put(id, read(body));
+        var seqNo = seqNos.merge(id, 1L, Long::sum);
+        return FakeElasticsearchServer.Response.ok(
+                "{\"_index\":\"student\",\"_id\":\"" + id + "\",\"_version\":2,\"result\":\"updated\",\"_seq_no\":"
+                        + seqNo + ",\"_primary_term\":1,\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}}");
+    }
+
+    private String write(Student student) {
+        try {
+            return objectMapper.writeValueAsString(student);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Student read(String json) {
+        try {
+            return objectMapper.readValue(json, Student.class);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
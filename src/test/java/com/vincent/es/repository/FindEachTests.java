@@ -0,0 +1,164 @@
+package com.vincent.es.repository;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vincent.es.entity.Student;
+import com.vincent.es.support.FakeElasticsearchServer;
+import com.vincent.es.util.SearchInfo;
+import com.vincent.es.util.SearchUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class FindEachTests {
+    private FakeElasticsearchServer server;
+    private StudentEsRepository repository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicReference<String> requestBody = new AtomicReference<>();
+    private final List<Integer> pageSizes = new CopyOnWriteArrayList<>();
+    private final List<String> closedPits = new CopyOnWriteArrayList<>();
+    private final AtomicInteger openedPits = new AtomicInteger();
+    private String responseBody;
+    private int totalDocs; // 以 point-in-time 分頁時，索引中的文件數量，編號與排序值為 1 ~ totalDocs
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeElasticsearchServer();
+        server.handle("/_search", (method, path, body) -> {
+            requestBody.set(body);
+            return FakeElasticsearchServer.Response.ok(body.contains("\"pit\"") ? page(body) : responseBody);
+        });
+        server.handle("/_pit", (method, path, body) -> {
+            if ("DELETE".equals(method)) {
+                closedPits.add(readTree(body).path("id").asText());
+                return FakeElasticsearchServer.Response.ok("{\"succeeded\":true,\"num_freed\":1}");
+            }
+            openedPits.incrementAndGet();
+            return FakeElasticsearchServer.Response.ok("{\"id\":\"pit-1\"}");
+        });
+        repository = new StudentEsRepository(server.createClient(), "student");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testExportRejectsNonPositiveSlices() {
+        assertThrows(IllegalArgumentException.class, () -> repository.export(new SearchInfo(), 0, doc -> {}));
+
+        assertEquals(0, openedPits.get());
+    }
+
+    @Test
+    public void testParseHitsIncrementally() {
+        responseBody = "{\"took\":3,\"hits\":{\"hits\":["
+                + "{\"_source\":{\"id\":\"101\",\"name\":\"Dora\",\"grade\":4,\"courses\":[{\"name\":\"會計學\",\"point\":3}]}},"
+                + "{\"_source\":{\"id\":\"102\",\"name\":\"Mario\",\"grade\":3}},"
+                + "{\"_source\":{\"id\":\"103\",\"name\":\"Vincent\",\"grade\":2}}]}}";
+
+        var info = SearchInfo.of(SearchUtils.createRangeQuery("grade", 2, null));
+        info.setSize(3);
+        var students = new ArrayList<Student>();
+        var count = repository.findEach(info, students::add);
+
+        assertEquals(3, count);
+        assertEquals(List.of("101", "102", "103"), students.stream().map(Student::getId).collect(Collectors.toList()));
+        assertEquals("會計學", students.get(0).getCourses().get(0).getName());
+        assertTrue(requestBody.get().contains("\"size\":3"));
+    }
+
+    @Test
+    public void testSkipFieldsOtherThanSource() {
+        responseBody = "{\"took\":2,\"timed_out\":false,\"hits\":{\"total\":{\"value\":2,\"relation\":\"eq\"},"
+                + "\"max_score\":1.0,\"hits\":["
+                + "{\"_index\":\"student\",\"_id\":\"101\",\"_score\":1.0,\"_source\":{\"id\":\"101\"},\"sort\":[4]},"
+                + "{\"_index\":\"student\",\"_id\":\"102\",\"_score\":1.0,\"_source\":{\"id\":\"102\"},\"sort\":[3]}]}}";
+
+        var students = new ArrayList<Student>();
+        var count = repository.findEach(new SearchInfo(), students::add);
+
+        assertEquals(2, count);
+        assertEquals(List.of("101", "102"), students.stream().map(Student::getId).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testPageWithPointInTimeBeyondOnePage() {
+        totalDocs = 2300;
+        var info = new SearchInfo();
+        info.setSize(2500);
+
+        var ids = new ArrayList<String>();
+        var count = repository.findEach(info, student -> ids.add(student.getId()));
+
+        assertEquals(2300, count);
+        assertEquals(2300, ids.size());
+        assertEquals("1", ids.get(0));
+        assertEquals("2300", ids.get(2299));
+        assertEquals(List.of(1000, 1000, 500), pageSizes);
+        assertEquals(List.of("pit-2"), closedPits);
+    }
+
+    @Test
+    public void testSkipFromAcrossPages() {
+        totalDocs = 5000;
+        var info = new SearchInfo();
+        info.setFrom(1500);
+        info.setSize(600);
+
+        var ids = new ArrayList<String>();
+        var count = repository.findEach(info, student -> ids.add(student.getId()));
+
+        assertEquals(600, count);
+        assertEquals("1501", ids.get(0));
+        assertEquals("2100", ids.get(599));
+        assertEquals(List.of(1000, 1000, 100), pageSizes);
+    }
+
+    @Test
+    public void testNoHits() {
+        responseBody = "{\"took\":1}";
+
+        var students = new ArrayList<Student>();
+        var count = repository.findEach(new SearchInfo(), students::add);
+
+        assertEquals(0, count);
+        assertTrue(students.isEmpty());
+    }
+
+    // 依 search_after 回傳下一頁，並如同 ES 更新 pit_id
+    private String page(String body) {
+        var request = readTree(body);
+        var size = request.path("size").asInt();
+        var after = request.path("search_after").path(0).asInt(0);
+        pageSizes.add(size);
+
+        var hits = IntStream.rangeClosed(after + 1, Math.min(after + size, totalDocs))
+                .mapToObj(i -> "{\"_source\":{\"id\":\"" + i + "\"},\"sort\":[" + i + "]}")
+                .collect(Collectors.joining(","));
+        return "{\"took\":1,\"pit_id\":\"pit-2\",\"hits\":{\"hits\":[" + hits + "]}}";
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
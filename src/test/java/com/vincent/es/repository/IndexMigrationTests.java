@@ -0,0 +1,114 @@
+package com.vincent.es.repository;
+
+import com.vincent.es.support.FakeElasticsearchServer;
+import com.vincent.es.support.FakeElasticsearchServer.Response;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class IndexMigrationTests {
+    private static final String SOURCE_INDEX = "student_old";
+
+    private FakeElasticsearchServer server;
+    private StudentEsRepository repository;
+    private final List<String> requests = new CopyOnWriteArrayList<>(); // 依序記錄 "METHOD path"
+    private volatile boolean targetExists;
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeElasticsearchServer();
+        server.handleDefault(this::handle);
+        repository = new StudentEsRepository(server.createClient(), "student");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testBlockWritesBeforeCatchUpAndSwitch() {
+        repository.init().join();
+
+        assertEquals(List.of(
+                "PUT /student_*",
+                "POST /_reindex",
+                "PUT /student_old/_settings",
+                "POST /_reindex",
+                "POST /_aliases",
+                "DELETE /student_old"), migrationRequests());
+    }
+
+    @Test
+    public void testFailWithoutDeletingExistingTarget() {
+        targetExists = true;
+
+        var e = assertThrows(CompletionException.class, () -> repository.init().join());
+
+        assertEquals(IllegalStateException.class, e.getCause().getClass());
+        assertEquals(List.of("PUT /student_*"), migrationRequests());
+        assertTrue(requests.stream().noneMatch(r -> r.startsWith("DELETE")));
+    }
+
+    @Test
+    public void testReleaseWriteBlockOnFailure() {
+        server.handle("/_aliases", (method, path, body) -> new Response(500,
+                "{\"error\":{\"type\":\"internal_server_error\",\"reason\":\"boom\"},\"status\":500}"));
+
+        assertThrows(CompletionException.class, () -> repository.init().join());
+
+        var settings = requests.stream().filter(r -> r.endsWith("/_settings")).count();
+        assertEquals(2, settings);
+        assertTrue(requests.contains("DELETE /student_*"));
+        assertFalse(requests.contains("DELETE /student_old"));
+    }
+
+    // 略過查詢類的請求，並以 student_* 代表依 mapping 計算出的新版索引名稱
+    private List<String> migrationRequests() {
+        return requests.stream()
+                .filter(r -> !r.startsWith("HEAD") && !r.startsWith("GET") && !r.endsWith("/_refresh"))
+                .collect(Collectors.toList());
+    }
+
+    private Response handle(String method, String path, String body) {
+        var normalized = path.replaceFirst("^/student_(?!old)[^/]*", "/student_*");
+        requests.add(method + " " + normalized);
+
+        if ("HEAD".equals(method)) {
+            return new Response(path.equals("/_alias/student") ? 200 : 404, "");
+        }
+        if ("GET".equals(method) && path.equals("/_alias/student")) {
+            return Response.ok("{\"" + SOURCE_INDEX + "\":{\"aliases\":{\"student\":{}}}}");
+        }
+        if ("PUT".equals(method) && normalized.equals("/student_*")) {
+            return targetExists
+                    ? new Response(400, "{\"error\":{\"type\":\"resource_already_exists_exception\","
+                            + "\"reason\":\"index already exists\"},\"status\":400}")
+                    : Response.ok("{\"acknowledged\":true,\"shards_acknowledged\":true,\"index\":\"target\"}");
+        }
+        if (path.equals("/_reindex")) {
+            return Response.ok("{\"task\":\"node:1\"}");
+        }
+        if (path.startsWith("/_tasks/")) {
+            return Response.ok("{\"completed\":true,\"task\":{\"node\":\"node\",\"id\":1,\"type\":\"transport\","
+                    + "\"action\":\"indices:data/write/reindex\",\"start_time_in_millis\":0,"
+                    + "\"running_time_in_nanos\":0,\"cancellable\":true,\"headers\":{}}}");
+        }
+        if (path.endsWith("/_refresh")) {
+            return Response.ok("{\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}}");
+        }
+
+        return Response.ok("{\"acknowledged\":true}");
+    }
+}
@@ -0,0 +1,122 @@
+package com.vincent.es.repository;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vincent.es.entity.Student;
+import com.vincent.es.support.FakeElasticsearchServer;
+import com.vincent.es.util.SearchInfo;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class MultiSearchTests {
+    private static final int FAILING_SIZE = 99;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private FakeElasticsearchServer server;
+    private StudentEsRepository repository;
+    private final List<Integer> searchesPerRequest = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeElasticsearchServer();
+        server.handle("/_msearch", (method, path, body) -> FakeElasticsearchServer.Response.ok(handleMsearch(body)));
+        repository = new StudentEsRepository(server.createClient(), "student");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testFindAllKeepsOrder() {
+        var results = repository.findAll(List.of(searchInfo(3), searchInfo(1), searchInfo(2)));
+
+        assertEquals(List.of(List.of("3"), List.of("1"), List.of("2")),
+                results.stream().map(this::toIds).collect(Collectors.toList()));
+        assertEquals(List.of(3), searchesPerRequest);
+    }
+
+    @Test
+    public void testFindAllThrowsFailedItem() {
+        var e = assertThrows(ElasticsearchException.class,
+                () -> repository.findAll(List.of(searchInfo(1), searchInfo(FAILING_SIZE))));
+
+        assertEquals(400, e.status());
+    }
+
+    @Test
+    public void testCoalesceConcurrentFind() {
+        repository.enableFindCoalescing(Duration.ofMillis(100), 20);
+        var executor = Executors.newFixedThreadPool(4);
+
+        var sizes = List.of(1, 2, 2, FAILING_SIZE);
+        var futures = sizes.stream()
+                .map(size -> CompletableFuture.supplyAsync(() -> repository.find(searchInfo(size)), executor))
+                .collect(Collectors.toList());
+
+        assertEquals(List.of("1"), toIds(futures.get(0).join()));
+        assertEquals(List.of("2"), toIds(futures.get(1).join()));
+        assertEquals(List.of("2"), toIds(futures.get(2).join()));
+        var failed = futures.get(3).handle((docs, error) -> error).join();
+        assertEquals(ElasticsearchException.class, failed.getCause().getClass());
+        // 內容相同的查詢只送出一次
+        assertEquals(List.of(3), searchesPerRequest);
+        executor.shutdown();
+    }
+
+    private SearchInfo searchInfo(int size) {
+        var info = new SearchInfo();
+        info.setSize(size);
+        return info;
+    }
+
+    private List<String> toIds(List<Student> docs) {
+        return docs.stream().map(Student::getId).collect(Collectors.toList());
+    }
+
+    // 每個查詢回傳一筆編號等於其 size 的文件，size 為 FAILING_SIZE 的查詢回傳錯誤
+    private String handleMsearch(String body) {
+        var lines = body.lines().filter(l -> !l.isBlank()).collect(Collectors.toList());
+        var items = new ArrayList<String>();
+
+        for (var i = 1; i < lines.size(); i += 2) {
+            var size = readTree(lines.get(i)).path("size").asInt();
+            if (size == FAILING_SIZE) {
+                items.add("{\"error\":{\"type\":\"search_phase_execution_exception\",\"reason\":\"failed\"},\"status\":400}");
+            } else {
+                items.add("{\"took\":1,\"timed_out\":false,"
+                        + "\"_shards\":{\"total\":1,\"successful\":1,\"skipped\":0,\"failed\":0},"
+                        + "\"hits\":{\"total\":{\"value\":1,\"relation\":\"eq\"},\"max_score\":1.0,\"hits\":["
+                        + "{\"_index\":\"student\",\"_id\":\"" + size + "\",\"_score\":1.0,\"_source\":{\"id\":\"" + size + "\"}}]},"
+                        + "\"status\":200}");
+            }
+        }
+
+        searchesPerRequest.add(items.size());
+        return "{\"took\":2,\"responses\":[" + String.join(",", items) + "]}";
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
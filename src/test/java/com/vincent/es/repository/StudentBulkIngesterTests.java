@@ -0,0 +1,250 @@
+package com.vincent.es.repository;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.Refresh;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vincent.es.entity.Student;
+import com.vincent.es.support.FakeElasticsearchServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StudentBulkIngesterTests {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private FakeElasticsearchServer server;
+    private StudentEsRepository repository;
+    private StudentEsAsyncRepository asyncRepository;
+    private BulkIngestOptions options;
+
+    private final AtomicInteger bulkRequestCount = new AtomicInteger();
+    private final List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+    private final Map<String, Integer> rejectTimes = new ConcurrentHashMap<>(); // 文件編號 -> 剩餘回傳 429 的次數
+    private final Set<String> invalidIds = ConcurrentHashMap.newKeySet();       // 一律回傳 400 的文件編號
+
+    @Before
+    public void setup() throws IOException {
+        server = new FakeElasticsearchServer();
+        server.handle("/_bulk", (method, path, body) -> FakeElasticsearchServer.Response.ok(handleBulk(body)));
+
+        options = new BulkIngestOptions();
+        options.setMaxDocuments(3);
+        options.setMaxConcurrentRequests(2);
+        options.setInitialBackoffMillis(1);
+        var client = server.createClient();
+        repository = new StudentEsRepository(client, "student", options);
+        asyncRepository = new StudentEsAsyncRepository(new ElasticsearchAsyncClient(client._transport()), "student", options);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testSplitByDocumentCount() {
+        var result = repository.insert(createStudents(10), null);
+
+        assertEquals(10, result.getSucceeded());
+        assertEquals(0, result.getFailed());
+        assertEquals(List.of(1, 3, 3, 3), batchSizes.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testSplitByBytes() {
+        options.setMaxDocuments(1000);
+        options.setMaxBytes(1);
+
+        var result = repository.insert(createStudents(4), null);
+
+        assertEquals(4, result.getSucceeded());
+        assertEquals(List.of(1, 1, 1, 1), batchSizes);
+    }
+
+    @Test
+    public void testRetryOnlyRejectedItems() {
+        rejectTimes.put("2", 1);
+        rejectTimes.put("5", 2);
+        var results = new CopyOnWriteArrayList<BulkItemResult>();
+
+        var result = repository.insert(createStudents(6), results::add);
+
+        assertEquals(6, result.getSucceeded());
+        assertEquals(0, result.getFailed());
+        assertEquals(6, results.size());
+        assertEquals(2, attemptsOf(results, "2"));
+        assertEquals(3, attemptsOf(results, "5"));
+        assertEquals(1, attemptsOf(results, "1"));
+        // 2 批原始請求 + 3 次只含被拒項目的重試
+        assertEquals(5, bulkRequestCount.get());
+        assertEquals(List.of(1, 1, 1, 3, 3), batchSizes.stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testGiveUpAfterMaxRetries() {
+        options.setMaxRetries(1);
+        rejectTimes.put("1", 5);
+        invalidIds.add("3");
+        var results = new CopyOnWriteArrayList<BulkItemResult>();
+
+        var result = repository.insert(createStudents(3), results::add);
+
+        assertEquals(1, result.getSucceeded());
+        assertEquals(2, result.getFailed());
+
+        var failedIds = results.stream()
+                .filter(r -> !r.isSucceeded())
+                .map(r -> r.getDocument().getId())
+                .collect(Collectors.toSet());
+        assertEquals(Set.of("1", "3"), failedIds);
+        assertEquals(2, attemptsOf(results, "1"));
+        assertEquals(1, attemptsOf(results, "3"));
+    }
+
+    @Test
+    public void testInsertListKeepsIds() {
+        var students = repository.insert(createStudents(5));
+
+        assertEquals(5, students.size());
+        assertTrue(students.stream().allMatch(s -> s.getId() != null));
+    }
+
+    @Test
+    public void testInsertListFailsOnRejectedItems() {
+        invalidIds.add("2");
+
+        try {
+            repository.insert(createStudents(5));
+            fail("Expected BulkIngestException");
+        } catch (BulkIngestException e) {
+            assertEquals(4, e.getResult().getSucceeded());
+            assertEquals(1, e.getResult().getFailed());
+            assertEquals(Set.of(400), e.getFailedStatuses());
+            assertTrue(e.isClientError());
+        }
+    }
+
+    @Test
+    public void testInsertListFailsOnTransportError() {
+        server.handle("/_bulk", (method, path, body) -> new FakeElasticsearchServer.Response(500,
+                "{\"error\":{\"type\":\"internal_server_error\",\"reason\":\"boom\"},\"status\":500}"));
+
+        try {
+            repository.insert(createStudents(5));
+            fail("Expected BulkIngestException");
+        } catch (BulkIngestException e) {
+            assertEquals(0, e.getResult().getSucceeded());
+            assertEquals(5, e.getResult().getFailed());
+            assertFalse(e.isClientError());
+        }
+    }
+
+    @Test
+    public void testAsyncInsertFailsOnRejectedItems() {
+        invalidIds.add("2");
+
+        var e = assertThrows(CompletionException.class, () -> asyncRepository.insert(createStudents(5)).join());
+
+        var cause = (BulkIngestException) e.getCause();
+        assertEquals(4, cause.getResult().getSucceeded());
+        assertEquals(1, cause.getResult().getFailed());
+        assertEquals(Set.of(400), cause.getFailedStatuses());
+        // 兩批都已送出
+        assertEquals(2, bulkRequestCount.get());
+    }
+
+    @Test
+    public void testRefreshOnceAfterAllBatches() {
+        var refreshCount = new AtomicInteger();
+        server.handle("/_refresh", (method, path, body) -> {
+            refreshCount.incrementAndGet();
+            return FakeElasticsearchServer.Response.ok("{\"_shards\":{\"total\":1,\"successful\":1,\"failed\":0}}");
+        });
+
+        var result = repository.insert(createStudents(10), null, Refresh.True);
+
+        assertEquals(10, result.getSucceeded());
+        assertEquals(4, bulkRequestCount.get());
+        assertEquals(1, refreshCount.get());
+    }
+
+    private String handleBulk(String body) {
+        bulkRequestCount.incrementAndGet();
+
+        var lines = body.lines().filter(l -> !l.isBlank()).collect(Collectors.toList());
+        var items = new ArrayList<String>();
+        var hasError = false;
+
+        for (var i = 0; i < lines.size(); i += 2) {
+            var id = readTree(lines.get(i)).path("create").path("_id").asText();
+            var remaining = rejectTimes.getOrDefault(id, 0);
+
+            String item;
+            if (remaining > 0) {
+                rejectTimes.put(id, remaining - 1);
+                item = errorItem(id, 429, "es_rejected_execution_exception");
+                hasError = true;
+            } else if (invalidIds.contains(id)) {
+                item = errorItem(id, 400, "mapper_parsing_exception");
+                hasError = true;
+            } else {
+                item = "{\"create\":{\"_index\":\"student\",\"_id\":\"" + id + "\",\"status\":201,\"result\":\"created\"}}";
+            }
+            items.add(item);
+        }
+
+        batchSizes.add(items.size());
+        return "{\"took\":1,\"errors\":" + hasError + ",\"items\":[" + String.join(",", items) + "]}";
+    }
+
+    private String errorItem(String id, int status, String type) {
+        return "{\"create\":{\"_index\":\"student\",\"_id\":\"" + id + "\",\"status\":" + status
+                + ",\"error\":{\"type\":\"" + type + "\",\"reason\":\"" + type + "\"}}}";
+    }
+
+    private ObjectNode readTree(String json) {
+        try {
+            return (ObjectNode) objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private int attemptsOf(List<BulkItemResult> results, String id) {
+        return results.stream()
+                .filter(r -> id.equals(r.getDocument().getId()))
+                .findFirst()
+                .orElseThrow()
+                .getAttempts();
+    }
+
+    private List<Student> createStudents(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> {
+                    var student = new Student();
+                    student.setId(String.valueOf(i));
+                    student.setName("Student " + i);
+                    return student;
+                })
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,141 @@
+package com.vincent.es.support;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import co.elastic.clients.transport.rest_client.RestClientTransport;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.RestClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 以 JDK 內建的 HttpServer 模擬 Elasticsearch 的 REST 端點，依路徑結尾（如 "/_bulk"）分派給 handler，
+ * 沒有符合的路徑時交給 defaultHandler。可設定每個回應的固定延遲以模擬叢集處理時間。
+ */
+public class FakeElasticsearchServer implements AutoCloseable {
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+    private volatile Handler defaultHandler;
+    private volatile Duration latency = Duration.ZERO;
+    private RestClient restClient;
+
+    // HttpServer 預設未開啟 TCP_NODELAY，Nagle 與 delayed ACK 會讓每次往返多出約 40 毫秒；
+    // 此設定在 HttpServer 第一次建立時讀取，因此需在此之前設定
+    static {
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    public FakeElasticsearchServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::dispatch);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public void handle(String pathSuffix, Handler handler) {
+        handlers.put(pathSuffix, handler);
+    }
+
+    public void handleDefault(Handler handler) {
+        defaultHandler = handler;
+    }
+
+    public void setLatency(Duration latency) {
+        this.latency = latency;
+    }
+
+    public HttpHost getHttpHost() {
+        return new HttpHost("localhost", server.getAddress().getPort());
+    }
+
+    public ElasticsearchClient createClient() {
+        restClient = RestClient.builder(getHttpHost()).build();
+        var transport = new RestClientTransport(restClient, new JacksonJsonpMapper());
+        return new ElasticsearchClient(transport);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (restClient != null) {
+            restClient.close();
+        }
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        var path = exchange.getRequestURI().getPath();
+        var body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+
+        var handler = handlers.entrySet().stream()
+                .filter(e -> path.endsWith(e.getKey()))
+                .map(Map.Entry::getValue)
+                .findFirst()
+                .orElse(defaultHandler);
+
+        Response response;
+        try {
+            response = handler == null
+                    ? new Response(404, "{\"error\":\"no handler for " + path + "\",\"status\":404}")
+                    : handler.handle(exchange.getRequestMethod(), path, body);
+        } catch (RuntimeException e) {
+            response = new Response(500, "{\"error\":\"" + e.getMessage() + "\",\"status\":500}");
+        }
+
+        sleep(latency);
+
+        var bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.getResponseHeaders().add("X-Elastic-Product", "Elasticsearch");
+        // HEAD 的回應不可帶有 body
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(response.status, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (var os = exchange.getResponseBody()) {
+            os.write(bytes);
+        }
+    }
+
+    private static void sleep(Duration duration) {
+        if (duration.isZero()) {
+            return;
+        }
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @FunctionalInterface
+    public interface Handler {
+        Response handle(String method, String path, String body);
+    }
+
+    public static class Response {
+        private final int status;
+        private final String body;
+
+        public Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public static Response ok(String body) {
+            return new Response(200, body);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.vincent.es.util;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class BoundedCacheTests {
+
+    @Test
+    public void testHitAndMiss() {
+        var cache = new BoundedCache<String, String>(10, Duration.ofMinutes(1));
+        var loads = new AtomicInteger();
+
+        cache.get("a", k -> k + loads.incrementAndGet());
+        var value = cache.get("a", k -> k + loads.incrementAndGet());
+
+        assertEquals("a1", value);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        var cache = new BoundedCache<String, String>(2, Duration.ofMinutes(1));
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.getIfPresent("a");
+        cache.put("c", "3");
+
+        assertNull(cache.getIfPresent("b"));
+        assertEquals("1", cache.getIfPresent("a"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testExpire() {
+        var cache = new BoundedCache<String, String>(10, Duration.ZERO);
+        cache.put("a", "1");
+
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testCollapseConcurrentMisses() throws Exception {
+        var cache = new BoundedCache<String, String>(10, Duration.ofMinutes(1));
+        var loads = new AtomicInteger();
+        var loaderStarted = new CountDownLatch(1);
+        var releaseLoader = new CountDownLatch(1);
+        var executor = Executors.newFixedThreadPool(4);
+
+        var futures = new ArrayList<Future<String>>();
+        futures.add(executor.submit(() -> cache.get("a", k -> {
+            loads.incrementAndGet();
+            loaderStarted.countDown();
+            await(releaseLoader);
+            return "loaded";
+        })));
+        loaderStarted.await();
+        for (var i = 0; i < 3; i++) {
+            futures.add(executor.submit(() -> cache.get("a", k -> "loaded-" + loads.incrementAndGet())));
+        }
+
+        Thread.sleep(100);
+        releaseLoader.countDown();
+        for (var future : futures) {
+            assertEquals("loaded", future.get());
+        }
+        executor.shutdown();
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testInvalidateDuringLoadDiscardsResult() {
+        var cache = new BoundedCache<String, String>(10, Duration.ofMinutes(1));
+
+        var value = cache.get("a", k -> {
+            cache.invalidate("a");
+            return "stale";
+        });
+
+        assertEquals("stale", value);
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testAsyncLoadPutsResult() {
+        var cache = new BoundedCache<String, String>(10, Duration.ofMinutes(1));
+
+        var value = cache.getAsync("a", k -> CompletableFuture.completedFuture("loaded")).join();
+
+        assertEquals("loaded", value);
+        assertEquals("loaded", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testInvalidateDuringAsyncLoadDiscardsResult() {
+        var cache = new BoundedCache<String, String>(10, Duration.ofMinutes(1));
+        var load = new CompletableFuture<String>();
+
+        var future = cache.getAsync("a", k -> load);
+        cache.invalidate("a");
+        load.complete("stale");
+
+        assertEquals("stale", future.join());
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testSyncGetJoinsAsyncLoad() throws Exception {
+        var cache = new BoundedCache<String, String>(10, Duration.ofMinutes(1));
+        var load = new CompletableFuture<String>();
+        var executor = Executors.newSingleThreadExecutor();
+
+        var asyncValue = cache.getAsync("a", k -> load);
+        var syncValue = executor.submit(() -> cache.get("a", k -> "sync"));
+        Thread.sleep(100);
+        load.complete("async");
+
+        assertEquals("async", asyncValue.join());
+        assertEquals("async", syncValue.get());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testGetAllLoadsOnlyMisses() {
+        var cache = new BoundedCache<String, String>(10, Duration.ofMinutes(1));
+        cache.put("b", "cached");
+        var loadedKeys = new ArrayList<Set<String>>();
+
+        var values = cache.getAll(List.of("a", "b", "c"), keys -> {
+            loadedKeys.add(Set.copyOf(keys));
+            return keys.stream().collect(Collectors.toMap(k -> k, k -> "loaded-" + k));
+        });
+
+        assertEquals(List.of("loaded-a", "cached", "loaded-c"), new ArrayList<>(values.values()));
+        assertEquals(List.of(Set.of("a", "c")), loadedKeys);
+        assertEquals("loaded-a", cache.getIfPresent("a"));
+    }
+
+    @Test
+    public void testInvalidateDuringGetAllDiscardsResult() {
+        var cache = new BoundedCache<String, String>(10, Duration.ofMinutes(1));
+
+        var values = cache.getAll(List.of("a", "b"), keys -> {
+            cache.invalidate("a");
+            return Map.of("a", "stale", "b", "fresh");
+        });
+
+        assertEquals("stale", values.get("a"));
+        assertNull(cache.getIfPresent("a"));
+        assertEquals("fresh", cache.getIfPresent("b"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.vincent.es.util;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RequestCoalescerTests {
+
+    @Test
+    public void testMergeRequestsWithinWindow() {
+        var batches = new CopyOnWriteArrayList<Set<String>>();
+        var coalescer = new RequestCoalescer<String, String>(
+                Duration.ofMillis(50), 100, keys -> {
+                    batches.add(Set.copyOf(keys));
+                    return keys.stream().collect(Collectors.toMap(Function.identity(), k -> "v" + k));
+                }, Executors.defaultThreadFactory());
+
+        var a = coalescer.submit("a");
+        var b = coalescer.submit("b");
+        var a2 = coalescer.submit("a");
+
+        assertEquals("va", a.join());
+        assertEquals("vb", b.join());
+        assertEquals("va", a2.join());
+        assertEquals(List.of(Set.of("a", "b")), batches);
+        coalescer.shutdown();
+    }
+
+    @Test
+    public void testSendWhenBatchIsFull() {
+        var batches = new CopyOnWriteArrayList<Set<String>>();
+        var coalescer = new RequestCoalescer<String, String>(
+                Duration.ofMinutes(1), 2, keys -> {
+                    batches.add(Set.copyOf(keys));
+                    return Map.of();
+                }, Executors.defaultThreadFactory());
+
+        var a = coalescer.submit("a");
+        coalescer.submit("b");
+
+        assertNull(a.join());
+        assertEquals(List.of(Set.of("a", "b")), batches);
+        coalescer.shutdown();
+    }
+}